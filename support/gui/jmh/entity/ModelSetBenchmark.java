@@ -0,0 +1,94 @@
+/*
+ *
+ * Project TouIST, 2015. Easily formalize and solve real-world sized problems
+ * using propositional logic and linear theory of reals with a nice GUI.
+ *
+ * https://github.com/touist/touist
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl-2.1.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     Alexis Comte, Abdelwahab Heba, Olivier Lezaud,
+ *     Skander Ben Slimane, Maël Valais
+ *
+ */
+
+package entity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import touist.BenchmarkInputs;
+
+/**
+ * The set that ModelProducer uses for finding the models that were
+ * already given: add() of a new model and contains() of a model that is in
+ * the set and of one that differs by its last literal only.
+ *
+ * @author Maël
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ModelSetBenchmark {
+	@Param({"1000", "10000", "100000", "1000000", "10000000"})
+	public int literals;
+
+	private Model model;
+	private Model other;
+	private List<Model> models;
+	private ModelSet set;
+
+	@Setup
+	public void setup() {
+		model = BenchmarkInputs.model(literals);
+		other = BenchmarkInputs.model(literals);
+		Literal last = other.literals.get(literals - 1);
+		other.literals.set(literals - 1, new Literal(last.getLiteral(), !last.isLiteral_positivity()));
+		models = new ArrayList<Model>();
+		models.add(model);
+		set = new ModelSet(models);
+		set.add(model, 0);
+	}
+
+	@Benchmark
+	public ModelSet add() {
+		ModelSet fresh = new ModelSet(models);
+		fresh.add(model, 0);
+		return fresh;
+	}
+
+	@Benchmark
+	public boolean containsPresent() {
+		return set.contains(model);
+	}
+
+	@Benchmark
+	public boolean containsAbsent() {
+		return set.contains(other);
+	}
+}
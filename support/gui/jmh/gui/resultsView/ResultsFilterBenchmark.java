@@ -0,0 +1,105 @@
+/*
+ *
+ * Project TouIST, 2015. Easily formalize and solve real-world sized problems
+ * using propositional logic and linear theory of reals with a nice GUI.
+ *
+ * https://github.com/touist/touist
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl-2.1.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     Alexis Comte, Abdelwahab Heba, Olivier Lezaud,
+ *     Skander Ben Slimane, Maël Valais
+ *
+ */
+package gui.resultsView;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import entity.Model;
+import touist.BenchmarkInputs;
+
+/**
+ * The filtering done by ResultTableModel each time the filter text or a
+ * "show true/false literals" box changes (with the LiteralIndex of the names
+ * and without), and the sort by name and the index built once per model,
+ * without the Swing table.
+ *
+ * @author Maël
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ResultsFilterBenchmark {
+	@Param({"1000", "10000", "100000", "1000000", "10000000"})
+	public int literals;
+
+	/**
+	 * No filter, a filter that keeps cell(10,*) to cell(19,*) (none of the
+	 * 1000 first literals, then 1% of them) and an invalid regex (ignored)
+	 */
+	@Param({"", "cell\\(1[0-9],", "cell("})
+	public String regex;
+
+	private Model model;
+	private int[] byName;
+	private LiteralIndex index;
+
+	@Setup
+	public void setup() {
+		model = BenchmarkInputs.model(literals);
+		byName = ResultTableModel.sortByName(model);
+		index = new LiteralIndex(model, byName);
+	}
+
+	@Benchmark
+	public int[] allLiterals() {
+		return ResultTableModel.filter(model, byName, true, index, regex, true, true);
+	}
+
+	@Benchmark
+	public int[] trueLiteralsOnly() {
+		return ResultTableModel.filter(model, byName, true, index, regex, true, false);
+	}
+
+	/**
+	 * The regex run on every name (no index)
+	 */
+	@Benchmark
+	public int[] regexScan() {
+		return ResultTableModel.filter(model, byName, true, null, regex, true, true);
+	}
+
+	@Benchmark
+	public int[] sortByName() {
+		return ResultTableModel.sortByName(model);
+	}
+
+	@Benchmark
+	public LiteralIndex buildIndex() {
+		return new LiteralIndex(model, byName);
+	}
+}
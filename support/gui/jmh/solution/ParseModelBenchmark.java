@@ -0,0 +1,94 @@
+/*
+ *
+ * Project TouIST, 2015. Easily formalize and solve real-world sized problems
+ * using propositional logic and linear theory of reals with a nice GUI.
+ *
+ * https://github.com/touist/touist
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl-2.1.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     Alexis Comte, Abdelwahab Heba, Olivier Lezaud,
+ *     Skander Ben Slimane, Maël Valais
+ *
+ */
+package solution;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import entity.Model;
+import touist.BenchmarkInputs;
+
+/**
+ * Parsing of one model printed by the solvers: minisat.jar prints
+ * "1 -2 3 ... 0" (SolverTestSAT4J) and touist --qbf prints one
+ * "value name" line per proposition (SolverQBF).
+ *
+ * @author Maël
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ParseModelBenchmark {
+	@Param({"1000", "10000", "100000", "1000000", "10000000"})
+	public int literals;
+
+	private SolverTestSAT4J sat;
+	private String[] satOutput;
+	private SolverQBF qbf;
+	private String[] qbfOutput;
+
+	@Setup
+	public void setup() {
+		boolean[] values = BenchmarkInputs.values(literals);
+		Map<Integer, String> literalsMap = new HashMap<Integer, String>();
+		satOutput = new String[literals + 1];
+		qbfOutput = new String[literals];
+		for (int i = 0; i < literals; i++) {
+			String name = BenchmarkInputs.name(i + 1);
+			literalsMap.put(i + 1, name);
+			satOutput[i] = values[i] ? Integer.toString(i + 1) : Integer.toString(-(i + 1));
+			qbfOutput[i] = (values[i] ? "1 " : "0 ") + name;
+		}
+		satOutput[literals] = "0";
+		sat = new SolverTestSAT4J("unused.cnf", literalsMap);
+		qbf = new SolverQBF(new BufferedReader(new StringReader("")));
+	}
+
+	@Benchmark
+	public Model solverTestSAT4J() {
+		return sat.parseModel(satOutput);
+	}
+
+	@Benchmark
+	public Model solverQBF() {
+		return qbf.parseModel(qbfOutput);
+	}
+}
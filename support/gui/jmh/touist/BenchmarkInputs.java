@@ -0,0 +1,75 @@
+/*
+ *
+ * Project TouIST, 2015. Easily formalize and solve real-world sized problems
+ * using propositional logic and linear theory of reals with a nice GUI.
+ *
+ * https://github.com/touist/touist
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl-2.1.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     Alexis Comte, Abdelwahab Heba, Olivier Lezaud,
+ *     Skander Ben Slimane, Maël Valais
+ *
+ */
+package touist;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import entity.Literal;
+import entity.Model;
+
+/**
+ * Generated inputs shared by the benchmarks: the propositions look like the
+ * ones of a grounded "bigand" (e.g. cell(12,345)) and the values are random
+ * but always the same for a given size.
+ *
+ * @author Maël
+ */
+public class BenchmarkInputs {
+	/**
+	 * @return the name of the i-th proposition
+	 */
+	public static String name(int i) {
+		return "cell(" + (i / 1000) + "," + (i % 1000) + ")";
+	}
+
+	/**
+	 * @return n random values, the same ones for the same n
+	 */
+	public static boolean[] values(int n) {
+		Random random = new Random(n);
+		boolean[] values = new boolean[n];
+		for (int i = 0; i < n; i++)
+			values[i] = random.nextBoolean();
+		return values;
+	}
+
+	/**
+	 * @return the literals name(1)..name(n) with values(n)
+	 */
+	public static List<Literal> literals(int n) {
+		boolean[] values = values(n);
+		List<Literal> literals = new ArrayList<Literal>(n);
+		for (int i = 0; i < n; i++)
+			literals.add(new Literal(name(i + 1), values[i]));
+		return literals;
+	}
+
+	public static Model model(int n) {
+		Model model = new Model();
+		for (Literal literal : literals(n))
+			model.addLiteral(literal);
+		return model;
+	}
+}
@@ -0,0 +1,503 @@
+/*
+ *
+ * Project TouIST, 2015. Easily formalize and solve real-world sized problems
+ * using propositional logic and linear theory of reals with a nice GUI.
+ *
+ * https://github.com/touist/touist
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl-2.1.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     Alexis Comte, Abdelwahab Heba, Olivier Lezaud,
+ *     Skander Ben Slimane, Maël Valais
+ *
+ */
+package touist;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import entity.Literal;
+import entity.Model;
+import solution.Solver;
+import solution.SolverQBF;
+import solution.SolverSAT4J;
+import solution.SolverSMT;
+import solution.SolverTestSAT4J;
+import translation.TranslatorSAT;
+import translation.TranslatorSMT;
+
+/**
+ * Measures the whole pipeline (touist translation, then solver) on the
+ * examples of test/ and on generated n-queens and sudoku problems:
+ *
+ *     ./gradlew pipelineBenchmark -Pbench.args='-runs 20 -baseline old.csv'
+ *
+ * or, with the classes of the 'jmh' source set in the class path,
+ *
+ *     java touist.PipelineBenchmark [-corpus ../../test] [-runs 10]
+ *          [-warmup 2] [-queens 8,16,32] [-sudoku 2,3,4] [-limit 1000]
+ *          [-smt-logic QF_IDL] [-only regex] [-o results.csv]
+ *          [-baseline baseline.csv] [-tolerance 0.2]
+ *
+ * Each case is run 'warmup' times (not measured) then 'runs' times. The
+ * phases are: translate (touist), solve (launch() of the solver), first
+ * model and all models (at most 'limit'), the last two being measured from
+ * the start of solve. The min, p50, p90, p99 and max latencies (ms) of each
+ * phase are written as CSV, along with the number of models and whether the
+ * expected solution of test/ (e.g. sudoku_solution.txt) was found.
+ *
+ * With -baseline (a CSV written by a previous run), the p50 of each phase
+ * is compared to the baseline one: more than 'tolerance' slower (and at
+ * least 1 ms) is a regression, printed on stderr; the exit code is then 1.
+ *
+ * The translation cache is disabled (see TranslationCache) so that touist
+ * is really measured.
+ *
+ * @author Maël
+ */
+public class PipelineBenchmark {
+	private static final String[] PHASES = {"translate", "solve", "first_model", "all_models"};
+	private static final double MIN_REGRESSION_MS = 1;
+
+	enum Kind { SAT_MINISAT, SAT_SAT4J, SMT, QBF }
+
+	static class Case {
+		final String name;
+		final Kind kind;
+		final String source;
+		/**
+		 * The sorted "value name" lines of the expected model, or null
+		 */
+		final List<String> solution;
+		Case(String name, Kind kind, String source, List<String> solution) {
+			this.name = name;
+			this.kind = kind;
+			this.source = source;
+			this.solution = solution;
+		}
+	}
+
+	/**
+	 * What one run of a case gives
+	 */
+	static class Run {
+		final double[] ms = new double[PHASES.length];
+		int models = 0;
+		boolean solutionFound = false;
+		Run() {
+			Arrays.fill(ms, Double.NaN);
+		}
+	}
+
+	private int runs = 10;
+	private int warmup = 2;
+	private int limit = 1000;
+	private String smtLogic = "QF_IDL";
+
+	public static void main(String[] args) throws IOException {
+		PipelineBenchmark benchmark = new PipelineBenchmark();
+		String corpus = "../../test";
+		String queens = "8,16,32";
+		String sudoku = "2,3,4";
+		Pattern only = null;
+		String output = null;
+		String baseline = null;
+		double tolerance = 0.2;
+		try {
+			for (int i = 0; i < args.length; i++) {
+				String arg = args[i];
+				if (arg.equals("-corpus")) corpus = args[++i];
+				else if (arg.equals("-runs")) benchmark.runs = Integer.parseInt(args[++i]);
+				else if (arg.equals("-warmup")) benchmark.warmup = Integer.parseInt(args[++i]);
+				else if (arg.equals("-queens")) queens = args[++i];
+				else if (arg.equals("-sudoku")) sudoku = args[++i];
+				else if (arg.equals("-limit")) benchmark.limit = Integer.parseInt(args[++i]);
+				else if (arg.equals("-smt-logic")) benchmark.smtLogic = args[++i];
+				else if (arg.equals("-only")) only = Pattern.compile(args[++i]);
+				else if (arg.equals("-o")) output = args[++i];
+				else if (arg.equals("-baseline")) baseline = args[++i];
+				else if (arg.equals("-tolerance")) tolerance = Double.parseDouble(args[++i]);
+				else throw new IllegalArgumentException("unknown option " + arg);
+			}
+		} catch (RuntimeException e) {
+			System.err.println("main(): " + e.getMessage());
+			System.err.println("Usage: see the documentation of touist.PipelineBenchmark");
+			System.exit(2);
+		}
+		System.setProperty("touist.translationCache", "false");
+
+		List<Case> cases = new ArrayList<Case>();
+		cases.addAll(corpus(new File(corpus)));
+		for (int n : sizes(queens))
+			cases.addAll(sat("queens-" + n, queens(n), null));
+		for (int n : sizes(sudoku))
+			cases.addAll(sat("sudoku-" + (n * n) + "x" + (n * n), sudoku(n), null));
+
+		// The solvers print a lot on stdout: when the CSV goes to stdout, the
+		// rest goes to stderr
+		PrintStream stdout = System.out;
+		PrintWriter out;
+		if (output == null) {
+			out = new PrintWriter(new OutputStreamWriter(stdout, "UTF-8"));
+			System.setOut(System.err);
+		} else {
+			out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(output), "UTF-8"));
+		}
+		out.println("case,phase,runs,min_ms,p50_ms,p90_ms,p99_ms,max_ms,models,solution");
+		Map<String, Double> current = new LinkedHashMap<String, Double>();
+		for (Case c : cases) {
+			if (only != null && !only.matcher(c.name).find())
+				continue;
+			benchmark.measure(c, out, current);
+			out.flush();
+		}
+		out.close();
+
+		if (baseline != null && compare(readP50(new File(baseline)), current, tolerance))
+			System.exit(1);
+	}
+
+	/**
+	 * Runs the case and writes its lines; the p50 of each phase is put into
+	 * p50s (key "case,phase").
+	 */
+	void measure(Case c, PrintWriter out, Map<String, Double> p50s) {
+		List<Run> measured = new ArrayList<Run>();
+		String error = null;
+		for (int i = 0; i < warmup + runs && error == null; i++) {
+			try {
+				Run run = run(c);
+				if (i >= warmup)
+					measured.add(run);
+			} catch (Exception e) {
+				error = e.toString();
+			}
+		}
+		if (error != null) {
+			System.err.println("measure(): " + c.name + " failed: " + error);
+			out.println(csv(c.name) + ",error,0,,,,,,," + csv(error));
+			return;
+		}
+		Run last = measured.get(measured.size() - 1);
+		String solution = c.solution == null ? "" : last.solutionFound ? "found" : "NOT FOUND";
+		for (int phase = 0; phase < PHASES.length; phase++) {
+			double[] values = new double[measured.size()];
+			int count = 0;
+			for (Run run : measured)
+				if (!Double.isNaN(run.ms[phase]))
+					values[count++] = run.ms[phase];
+			if (count == 0)
+				continue; // e.g. no translation for QBF (touist solves it too)
+			values = Arrays.copyOf(values, count);
+			Arrays.sort(values);
+			double p50 = percentile(values, 50);
+			p50s.put(c.name + "," + PHASES[phase], p50);
+			out.println(csv(c.name) + "," + PHASES[phase] + "," + count + "," + ms(values[0]) + ","
+					+ ms(p50) + "," + ms(percentile(values, 90)) + "," + ms(percentile(values, 99)) + ","
+					+ ms(values[count - 1]) + "," + last.models + "," + solution);
+		}
+	}
+
+	/**
+	 * One run of the case, in a workspace of its own
+	 */
+	Run run(Case c) throws Exception {
+		Run run = new Run();
+		Workspace workspace = Workspace.create("pipeline");
+		Solver solver = null;
+		try {
+			long start;
+			if (c.kind == Kind.QBF) {
+				solver = new SolverQBF(new BufferedReader(new StringReader(c.source)));
+			} else if (c.kind == Kind.SMT) {
+				TranslatorSMT translator = new TranslatorSMT();
+				translator.setWorkspace(workspace);
+				start = System.nanoTime();
+				if (!translator.translate(new StringReader(c.source), smtLogic))
+					throw new IOException("translation failed: " + translator.getErrors());
+				run.ms[0] = since(start);
+				start = System.nanoTime();
+				SolverSMT smt = new SolverSMT(translator.getSMTFilePath());
+				Model model = smt.getresult();
+				run.ms[1] = run.ms[2] = since(start);
+				if (model != null) {
+					run.models = 1;
+					run.solutionFound = lines(model).equals(c.solution);
+				}
+				return run;
+			} else {
+				TranslatorSAT translator = new TranslatorSAT(new ArrayList<String>(), workspace);
+				start = System.nanoTime();
+				if (!translator.translate(new StringReader(c.source)))
+					throw new IOException("translation failed: " + translator.getErrors());
+				run.ms[0] = since(start);
+				if (c.kind == Kind.SAT_MINISAT)
+					solver = new SolverTestSAT4J(translator.getDimacsFilePath(), translator.getLiteralsMap());
+				else
+					solver = new SolverSAT4J(translator.getDimacsFilePath(), translator.getLiteralsMap());
+			}
+			start = System.nanoTime();
+			solver.launch();
+			run.ms[1] = since(start);
+			// The models are timed on this thread: none is computed in advance
+			solver.getModelList().setPrefetch(0);
+			Iterator<Model> iter = solver.getModelList().iterator();
+			if (iter.hasNext())
+				run.ms[2] = since(start);
+			while (run.models < limit && iter.hasNext()) {
+				Model model = iter.next();
+				run.models++;
+				if (c.solution != null && !run.solutionFound)
+					run.solutionFound = lines(model).equals(c.solution);
+			}
+			run.ms[3] = since(start);
+			return run;
+		} finally {
+			if (solver != null)
+				solver.close();
+			workspace.close();
+		}
+	}
+
+	/**
+	 * The examples of test/: sat/*.touistl, smt/*.touistl and qbf/*.touist,
+	 * with their expected model when there is one (X_solution.txt or
+	 * X.solution)
+	 */
+	static List<Case> corpus(File test) throws IOException {
+		List<Case> cases = new ArrayList<Case>();
+		for (File f : list(new File(test, "sat"), ".touistl")) {
+			String name = f.getName().replaceAll("\\.touistl$", "");
+			cases.addAll(sat("test/sat/" + name, read(f), solution(new File(f.getParentFile(), name + "_solution.txt"))));
+		}
+		for (File f : list(new File(test, "smt"), ".touistl")) {
+			String name = f.getName().replaceAll("\\.touistl$", "");
+			cases.add(new Case("test/smt/" + name, Kind.SMT, read(f),
+					solution(new File(f.getParentFile(), name + "_solution.txt"))));
+		}
+		for (File f : list(new File(test, "qbf"), ".touist")) {
+			String name = f.getName().replaceAll("\\.touist$", "");
+			cases.add(new Case("test/qbf/" + name, Kind.QBF, read(f),
+					solution(new File(f.getParentFile(), name + ".solution"))));
+		}
+		if (cases.isEmpty())
+			System.err.println("corpus(): no example found in '" + test + "'");
+		return cases;
+	}
+
+	/**
+	 * A SAT problem is measured with the in-process solver and with the
+	 * minisat.jar process
+	 */
+	static List<Case> sat(String name, String source, List<String> solution) {
+		return Arrays.asList(new Case(name + " [sat4j]", Kind.SAT_SAT4J, source, solution),
+				new Case(name + " [minisat.jar]", Kind.SAT_MINISAT, source, solution));
+	}
+
+	/**
+	 * @return n queens on a n*n board, none of them attacking another
+	 */
+	static String queens(int n) {
+		return "$N = [1.." + n + "]\n"
+				+ ";; a queen on each line\n"
+				+ "bigand $i in $N:\n  bigor $j in $N:\n    q($i,$j)\n  end\nend\n"
+				+ ";; at most one queen on each line, column and diagonal\n"
+				+ "bigand $i,$j,$k,$l in $N,$N,$N,$N when ($k > $i or ($k == $i and $l > $j))"
+				+ " and ($k == $i or $l == $j or $k - $i == $l - $j or $k - $i == $j - $l):\n"
+				+ "  not (q($i,$j) and q($k,$l))\nend\n";
+	}
+
+	/**
+	 * @return an empty sudoku of size (block*block)^2, written as
+	 * test/sat/sudoku.touistl
+	 */
+	static String sudoku(int block) {
+		return "$taillebloc = " + block + "\n"
+				+ "$taillegrille = $taillebloc*$taillebloc\n"
+				+ "$valeurs = [1..$taillegrille]\n"
+				+ "$lignes = [1..$taillegrille]\n"
+				+ "$colonnes = [1..$taillegrille]\n"
+				+ "bigand $l,$c in $lignes,$colonnes:\n  bigor $v in $valeurs:\n    p($l,$c,$v)\n  end\nend\n"
+				+ "bigand $l,$c,$v in $lignes,$colonnes,$valeurs:\n  p($l,$c,$v) =>\n"
+				+ "  bigand $v2 in $valeurs when $v2 != $v:\n    not p($l,$c,$v2)\n  end\nend\n"
+				+ "bigand $l,$c,$v in $lignes,$colonnes,$valeurs:\n  p($l,$c,$v) =>\n"
+				+ "  bigand $l2 in $lignes when $l2 != $l:\n    not p($l2,$c,$v)\n  end\nend\n"
+				+ "bigand $l,$c,$v in $lignes,$colonnes,$valeurs:\n  p($l,$c,$v) =>\n"
+				+ "  bigand $c2 in $colonnes when $c2 != $c:\n    not p($l,$c2,$v)\n  end\nend\n"
+				+ "bigand $l,$c,$v in $lignes,$colonnes,$valeurs:\n  p($l,$c,$v) =>\n"
+				+ "  let $lbloc = (int(($l-1)/$taillebloc)*$taillebloc):\n"
+				+ "  let $cbloc = (int(($c-1)/$taillebloc)*$taillebloc):\n"
+				+ "  bigand $l2,$c2 in [($lbloc+1)..($lbloc+$taillebloc)],[($cbloc+1)..($cbloc+$taillebloc)]"
+				+ " when ($l2 != $l and $c2 != $c):\n"
+				+ "    not p($l2,$c2,$v)\n  end\nend\n";
+	}
+
+	/**
+	 * @return the model as the sorted "value name" lines of the solutions of
+	 * test/ (the value is 1/0 for SAT, or the one given by the solver)
+	 */
+	static List<String> lines(Model model) {
+		List<String> lines = new ArrayList<String>();
+		for (Literal literal : model.literals) {
+			String value = literal.getArithmetic_value();
+			if (value == null)
+				value = literal.isLiteral_positivity() ? "1" : "0";
+			lines.add(value + " " + literal.getLiteral());
+		}
+		Collections.sort(lines);
+		return lines;
+	}
+
+	static List<String> solution(File file) throws IOException {
+		if (!file.isFile())
+			return null;
+		List<String> lines = new ArrayList<String>();
+		for (String line : read(file).split("\n"))
+			if (!line.trim().isEmpty())
+				lines.add(line.trim());
+		Collections.sort(lines);
+		return lines;
+	}
+
+	/**
+	 * Prints the regressions on stderr.
+	 * @return true if there is at least one regression
+	 */
+	static boolean compare(Map<String, Double> baseline, Map<String, Double> current, double tolerance) {
+		boolean regression = false;
+		for (Map.Entry<String, Double> entry : current.entrySet()) {
+			Double before = baseline.get(entry.getKey());
+			if (before == null)
+				continue;
+			double now = entry.getValue();
+			if (now > before * (1 + tolerance) && now - before >= MIN_REGRESSION_MS) {
+				System.err.println(String.format(Locale.ROOT, "REGRESSION %s: p50 %.3f ms -> %.3f ms (+%.0f%%)",
+						entry.getKey(), before, now, 100 * (now - before) / before));
+				regression = true;
+			}
+		}
+		if (!regression)
+			System.err.println("compare(): no regression (tolerance " + (int) (tolerance * 100) + "%)");
+		return regression;
+	}
+
+	/**
+	 * @return the p50 of each "case,phase" of a CSV written by main()
+	 */
+	static Map<String, Double> readP50(File csv) throws IOException {
+		Map<String, Double> p50s = new HashMap<String, Double>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(csv), "UTF-8"));
+		try {
+			String line = reader.readLine(); // header
+			while ((line = reader.readLine()) != null) {
+				List<String> fields = parseCsv(line);
+				if (fields.size() >= 5 && !fields.get(4).isEmpty())
+					p50s.put(fields.get(0) + "," + fields.get(1), Double.parseDouble(fields.get(4)));
+			}
+		} finally {
+			reader.close();
+		}
+		return p50s;
+	}
+
+	private static List<String> parseCsv(String line) {
+		List<String> fields = new ArrayList<String>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (quoted) {
+				if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+					field.append('"');
+					i++;
+				} else if (c == '"') {
+					quoted = false;
+				} else {
+					field.append(c);
+				}
+			} else if (c == '"') {
+				quoted = true;
+			} else if (c == ',') {
+				fields.add(field.toString());
+				field.setLength(0);
+			} else {
+				field.append(c);
+			}
+		}
+		fields.add(field.toString());
+		return fields;
+	}
+
+	private static String csv(String field) {
+		if (field.indexOf(',') == -1 && field.indexOf('"') == -1 && field.indexOf('\n') == -1)
+			return field;
+		return '"' + field.replace("\"", "\"\"").replace('\n', ' ') + '"';
+	}
+
+	/**
+	 * Nearest-rank percentile of sorted values
+	 */
+	static double percentile(double[] sorted, int p) {
+		int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+		return sorted[Math.max(0, rank - 1)];
+	}
+
+	private static double since(long start) {
+		return (System.nanoTime() - start) / 1e6;
+	}
+
+	private static String ms(double value) {
+		return String.format(Locale.ROOT, "%.3f", value);
+	}
+
+	private static List<Integer> sizes(String list) {
+		List<Integer> sizes = new ArrayList<Integer>();
+		for (String size : list.split(","))
+			if (!size.trim().isEmpty())
+				sizes.add(Integer.parseInt(size.trim()));
+		return sizes;
+	}
+
+	private static List<File> list(File dir, String extension) {
+		List<File> files = new ArrayList<File>();
+		File[] all = dir.listFiles();
+		if (all != null)
+			for (File f : all)
+				if (f.getName().endsWith(extension))
+					files.add(f);
+		Collections.sort(files);
+		return files;
+	}
+
+	private static String read(File file) throws IOException {
+		return new String(Files.readAllBytes(file.toPath()), "UTF-8");
+	}
+}
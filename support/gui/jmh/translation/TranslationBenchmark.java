@@ -0,0 +1,99 @@
+/*
+ *
+ * Project TouIST, 2015. Easily formalize and solve real-world sized problems
+ * using propositional logic and linear theory of reals with a nice GUI.
+ *
+ * https://github.com/touist/touist
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl-2.1.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     Alexis Comte, Abdelwahab Heba, Olivier Lezaud,
+ *     Skander Ben Slimane, Maël Valais
+ *
+ */
+package translation;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import touist.BenchmarkInputs;
+
+/**
+ * What is read after touist has run: the literals table (out.table, one
+ * "name code" line per literal) and the warnings/errors printed on stderr
+ * (here one message per literal, each one on two lines).
+ *
+ * @author Maël
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Dtouist.translationCache=false")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TranslationBenchmark {
+	@Param({"1000", "10000", "100000", "1000000", "10000000"})
+	public int literals;
+
+	private File table;
+	private String stderr;
+
+	@Setup
+	public void setup() throws IOException {
+		table = File.createTempFile("benchmark", ".table");
+		PrintWriter writer = new PrintWriter(table, "UTF-8");
+		for (int i = 1; i <= literals; i++)
+			writer.println(BenchmarkInputs.name(i) + " " + i);
+		writer.close();
+
+		StringBuilder sb = new StringBuilder();
+		for (int i = 1; i <= literals; i++)
+			sb.append(i).append(":7:120:130: warning: the proposition ")
+			.append(BenchmarkInputs.name(i)).append(" is never used\n  in this formula\n");
+		stderr = sb.toString();
+	}
+
+	@TearDown
+	public void tearDown() {
+		table.delete();
+	}
+
+	@Benchmark
+	public Map<Integer, String> parseLiteralsMapFile() throws IOException {
+		// A new translator each time so that the map is filled from scratch
+		TranslatorSAT translator = new TranslatorSAT();
+		translator.parseLiteralsMapFile(table.getPath());
+		return translator.getLiteralsMap();
+	}
+
+	@Benchmark
+	public List<TranslationError> translationErrorParse() {
+		return TranslationError.parse(stderr);
+	}
+}
@@ -23,18 +23,77 @@
 
 package entity;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.RandomAccess;
 
 /**
+ * A model is stored compactly: the names are numbers in a SymbolTable shared
+ * by the models of a problem, the values are bits of a long[] and the
+ * arithmetic values (SMT, QBF) are in a small sparse array. When the i-th
+ * literal of the model is the i-th symbol of the table (which is the case
+ * when the table has been filled by the first model and the solver always
+ * gives the literals in the same order), the numbers are not even stored:
+ * a model of n literals then takes about n/8 bytes instead of n Literal
+ * objects.
+ *
+ * The Literal objects of 'literals' (and of iterator()) are only created
+ * when they are asked for; size(), getName(), isTrue() and getValue() read
+ * the model without creating them.
  *
  * @author Abdel
  * @modified by Maël
  */
 public class Model implements Iterable<Literal>{
 
-	public List<Literal> literals = new ArrayList<Literal>();
+	/**
+	 * A view of the literals of the model: get() creates a new Literal each
+	 * time. The literals can be added at the end and replaced (set()), not
+	 * removed.
+	 */
+	public final List<Literal> literals = new Literals();
+
+	private final SymbolTable symbols;
+	private int size = 0;
+	private long[] positivity;
+	/**
+	 * ids[i] is the symbol of the i-th literal; null while the i-th literal
+	 * is the i-th symbol
+	 */
+	private int[] ids = null;
+	/**
+	 * The positions (in increasing order) of the literals that have an
+	 * arithmetic value, and these values
+	 */
+	private int[] valuePositions = null;
+	private String[] values = null;
+	private int valueCount = 0;
+
+	/**
+	 * A model with its own SymbolTable (for a model that is not part of a
+	 * list of models, e.g. the result of SolverSMT)
+	 */
+	public Model() {
+		this(new SymbolTable());
+	}
+
+	/**
+	 * @param symbols the table shared by the models of the problem
+	 */
+	public Model(SymbolTable symbols) {
+		this(symbols, 64);
+	}
+
+	/**
+	 * @param symbols the table shared by the models of the problem
+	 * @param capacity the number of literals expected
+	 */
+	public Model(SymbolTable symbols, int capacity) {
+		this.symbols = symbols;
+		this.positivity = new long[Math.max(1, (capacity + 63) >>> 6)];
+	}
 
 	/**
 	 * WARNING: two models are equals only
@@ -45,30 +104,110 @@ public class Model implements Iterable<Literal>{
 	@Override
 	public boolean equals(Object obj) {
 		Model m = (Model)obj;
-		boolean areEqual = true; 
-		if(this.literals.size() != m.literals.size()) {
-			areEqual = false;
+		if(this.size != m.size) {
+			return false;
 		}
-		for (int i = 0; i < this.literals.size() && areEqual; i++) {
-			if(!this.literals.get(i).equals(m.literals.get(i))) {
-				areEqual = false;
+		if(this.symbols == m.symbols && this.ids == null && m.ids == null) {
+			// Same symbols at the same places: only the values are compared
+			for (int w = 0; w < (size + 63) >>> 6; w++) {
+				if(this.positivity[w] != m.positivity[w]) {
+					return false;
+				}
 			}
+			return true;
 		}
-		return areEqual;
+		for (int i = 0; i < this.size; i++) {
+			if(this.isTrue(i) != m.isTrue(i) || !this.getName(i).equals(m.getName(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		int hash = size;
+		for (int i = 0; i < size; i++) {
+			hash = hash * 31 + getName(i).hashCode() * 2 + (isTrue(i) ? 1 : 0);
+		}
+		return hash;
 	}
 
 	public void addLiteral(Literal literal) {
-                literals.add(literal);
+		append(symbols.intern(literal.getLiteral()), literal.isLiteral_positivity(),
+				literal.getArithmetic_value());
+	}
+
+	/**
+	 * Same as addLiteral(new Literal(name, value)) without creating the
+	 * Literal.
+	 */
+	public void add(String name, boolean value) {
+		append(symbols.intern(name), value, null);
+	}
+
+	/**
+	 * Adds a literal whose name is already in getSymbols().
+	 * @param symbol the number of the name in getSymbols()
+	 * @param arithmeticValue can be null
+	 */
+	public void addSymbol(int symbol, boolean value, String arithmeticValue) {
+		symbols.name(symbol); // checks that the symbol exists
+		append(symbol, value, arithmeticValue);
+	}
+
+	/**
+	 * @return the number of literals
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the name of the i-th literal
+	 */
+	public String getName(int i) {
+		return symbols.name(symbolAt(i));
+	}
+
+	/**
+	 * @return the number of the name of the i-th literal in getSymbols()
+	 */
+	public int getSymbol(int i) {
+		return symbolAt(i);
+	}
+
+	/**
+	 * @return the value of the i-th literal (its positivity)
+	 */
+	public boolean isTrue(int i) {
+		checkIndex(i);
+		return (positivity[i >>> 6] & (1L << i)) != 0;
+	}
+
+	/**
+	 * @return the arithmetic value of the i-th literal, or null
+	 */
+	public String getValue(int i) {
+		checkIndex(i);
+		int v = valuePositions == null ? -1 : Arrays.binarySearch(valuePositions, 0, valueCount, i);
+		return v < 0 ? null : values[v];
+	}
+
+	public SymbolTable getSymbols() {
+		return symbols;
 	}
 
 	@Override
 	public String toString() {
 		// TODO Please write a proper toString
-		String out = "";
-		for (Literal s : literals) {
-			out = out + " ("+ s.getLiteral()+" "+((s.getArithmetic_value()==null)?s.isLiteral_positivity():s.getArithmetic_value())+") ";
+		StringBuilder out = new StringBuilder();
+		for (int i = 0; i < size; i++) {
+			String value = getValue(i);
+			out.append(" (").append(getName(i)).append(" ")
+					.append(value == null ? String.valueOf(isTrue(i)) : value).append(") ");
 		}
-		return out;
+		return out.toString();
 	}
 
 	@Override
@@ -76,5 +215,94 @@ public class Model implements Iterable<Literal>{
 		return literals.iterator();
 	}
 
+	private void checkIndex(int i) {
+		if (i < 0 || i >= size)
+			throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+	}
+
+	private int symbolAt(int i) {
+		checkIndex(i);
+		return ids == null ? i : ids[i];
+	}
+
+	private void append(int id, boolean value, String arithmeticValue) {
+		if (size == positivity.length << 6)
+			positivity = Arrays.copyOf(positivity, positivity.length * 2);
+		if (ids != null && size == ids.length)
+			ids = Arrays.copyOf(ids, positivity.length << 6);
+		size++;
+		set(size - 1, id, value, arithmeticValue);
+	}
+
+	private void set(int i, int id, boolean value, String arithmeticValue) {
+		if (ids == null && id != i) {
+			ids = new int[positivity.length << 6];
+			for (int j = 0; j < size; j++)
+				ids[j] = j;
+		}
+		if (ids != null)
+			ids[i] = id;
+		if (value)
+			positivity[i >>> 6] |= 1L << i;
+		else
+			positivity[i >>> 6] &= ~(1L << i);
+		setValue(i, arithmeticValue);
+	}
 
+	private void setValue(int i, String value) {
+		int v = valuePositions == null ? -1 : Arrays.binarySearch(valuePositions, 0, valueCount, i);
+		if (v >= 0) {
+			if (value != null) {
+				values[v] = value;
+			} else { // removed
+				System.arraycopy(valuePositions, v + 1, valuePositions, v, valueCount - v - 1);
+				System.arraycopy(values, v + 1, values, v, valueCount - v - 1);
+				values[--valueCount] = null;
+			}
+		} else if (value != null) {
+			if (valuePositions == null) {
+				valuePositions = new int[4];
+				values = new String[4];
+			} else if (valueCount == valuePositions.length) {
+				valuePositions = Arrays.copyOf(valuePositions, valueCount * 2);
+				values = Arrays.copyOf(values, valueCount * 2);
+			}
+			int at = -v - 1;
+			System.arraycopy(valuePositions, at, valuePositions, at + 1, valueCount - at);
+			System.arraycopy(values, at, values, at + 1, valueCount - at);
+			valuePositions[at] = i;
+			values[at] = value;
+			valueCount++;
+		}
+	}
+
+	private class Literals extends AbstractList<Literal> implements RandomAccess {
+		@Override
+		public Literal get(int index) {
+			Literal literal = new Literal(getName(index), isTrue(index));
+			literal.setArithmetic_value(getValue(index));
+			return literal;
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public Literal set(int index, Literal literal) {
+			Literal previous = get(index);
+			Model.this.set(index, symbols.intern(literal.getLiteral()), literal.isLiteral_positivity(),
+					literal.getArithmetic_value());
+			return previous;
+		}
+
+		@Override
+		public void add(int index, Literal literal) {
+			if (index != size)
+				throw new UnsupportedOperationException("literals can only be added at the end");
+			addLiteral(literal);
+			modCount++;
+		}
+	}
 }
@@ -0,0 +1,215 @@
+/*
+ *
+ * Project TouIST, 2015. Easily formalize and solve real-world sized problems
+ * using propositional logic and linear theory of reals with a nice GUI.
+ *
+ * https://github.com/touist/touist
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl-2.1.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     Alexis Comte, Abdelwahab Heba, Olivier Lezaud,
+ *     Skander Ben Slimane, Maël Valais
+ *
+ */
+
+package entity;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the models that have already been given (issue #88: two models that
+ * only differ on the hidden '&' literals are given once), replacing the
+ * LexicographicalTree that had one node per literal of each model.
+ *
+ * Only a 128-bit fingerprint and the position of each model are kept, in an
+ * open-addressing table (about 40 bytes per model whatever its size). The
+ * fingerprint is a sum over the literals, so it does not depend on their
+ * order. When two fingerprints are equal, the models themselves are compared
+ * (the models are read from the list given to the constructor), so a
+ * collision of fingerprints never hides a new model.
+ *
+ * @author Maël
+ */
+public class ModelSet {
+	private static final int EMPTY = -1;
+	/**
+	 * The position of the models that are not in the list (see addUnlisted())
+	 */
+	private static final int UNLISTED = -2;
+
+	private final List<Model> models;
+	private long[] fingerprints = new long[2 * 16]; // two longs per slot
+	private int[] positions = new int[16];
+	private int size = 0;
+
+	// The hashes of the names of the symbols of the last SymbolTable seen
+	// (two longs per symbol, 0 when not computed yet)
+	private SymbolTable symbols = null;
+	private long[] symbolHashes = new long[0];
+
+	/**
+	 * @param models the list in which the models added to the set are;
+	 * it is only read when two fingerprints are equal
+	 */
+	public ModelSet(List<Model> models) {
+		this.models = models;
+		Arrays.fill(positions, EMPTY);
+	}
+
+	/**
+	 * @return true if a model with the same literals (in any order) has been
+	 * added
+	 */
+	public boolean contains(Model model) {
+		long[] fingerprint = fingerprint(model);
+		return find(model, fingerprint[0], fingerprint[1]) >= 0;
+	}
+
+	/**
+	 * Adds the model if it has not been added yet.
+	 * @param position the index of the model in the list given to the
+	 * constructor (i.e. where it will be added if it is new)
+	 * @return true if the model is new
+	 */
+	public boolean add(Model model, int position) {
+		long[] fingerprint = fingerprint(model);
+		int slot = find(model, fingerprint[0], fingerprint[1]);
+		if (slot >= 0)
+			return false;
+		slot = -slot - 1;
+		fingerprints[2 * slot] = fingerprint[0];
+		fingerprints[2 * slot + 1] = fingerprint[1];
+		positions[slot] = position;
+		if (++size * 2 > positions.length)
+			grow();
+		return true;
+	}
+
+	/**
+	 * Adds a model that is not in the list (e.g. a model written to a file
+	 * but not kept, see ModelList.exportTo()). As it cannot be read again,
+	 * it is only compared by its fingerprint.
+	 * @return true if the model is new
+	 */
+	public boolean addUnlisted(Model model) {
+		return add(model, UNLISTED);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the slot of the model if it is in the set, else (-slot - 1)
+	 * where slot is the empty slot where it would be added
+	 */
+	private int find(Model model, long fingerprint0, long fingerprint1) {
+		int mask = positions.length - 1;
+		int slot = (int) (fingerprint0 ^ (fingerprint0 >>> 32)) & mask;
+		while (positions[slot] != EMPTY) {
+			if (fingerprints[2 * slot] == fingerprint0 && fingerprints[2 * slot + 1] == fingerprint1
+					&& (positions[slot] == UNLISTED || sameLiterals(model, models.get(positions[slot]))))
+				return slot;
+			slot = (slot + 1) & mask;
+		}
+		return -slot - 1;
+	}
+
+	private void grow() {
+		long[] oldFingerprints = fingerprints;
+		int[] oldPositions = positions;
+		fingerprints = new long[oldFingerprints.length * 2];
+		positions = new int[oldPositions.length * 2];
+		Arrays.fill(positions, EMPTY);
+		int mask = positions.length - 1;
+		for (int i = 0; i < oldPositions.length; i++) {
+			if (oldPositions[i] == EMPTY)
+				continue;
+			long fingerprint0 = oldFingerprints[2 * i];
+			int slot = (int) (fingerprint0 ^ (fingerprint0 >>> 32)) & mask;
+			while (positions[slot] != EMPTY)
+				slot = (slot + 1) & mask;
+			fingerprints[2 * slot] = fingerprint0;
+			fingerprints[2 * slot + 1] = oldFingerprints[2 * i + 1];
+			positions[slot] = oldPositions[i];
+		}
+	}
+
+	/**
+	 * @return the two halves of the fingerprint: the sums of two different
+	 * hashes of each (name, value) of the model
+	 */
+	private long[] fingerprint(Model model) {
+		if (model.getSymbols() != symbols) {
+			symbols = model.getSymbols();
+			symbolHashes = new long[0];
+		}
+		long fingerprint0 = model.size(), fingerprint1 = model.size();
+		for (int i = 0; i < model.size(); i++) {
+			int symbol = model.getSymbol(i);
+			if (2 * symbol + 1 >= symbolHashes.length)
+				symbolHashes = Arrays.copyOf(symbolHashes, Math.max(2 * symbol + 2, symbolHashes.length * 2));
+			if (symbolHashes[2 * symbol] == 0) {
+				String name = symbols.name(symbol);
+				symbolHashes[2 * symbol] = hash(name, 0x9E3779B97F4A7C15L) | 1;
+				symbolHashes[2 * symbol + 1] = hash(name, 0xC2B2AE3D27D4EB4FL);
+			}
+			long value = model.isTrue(i) ? 0x27BB2EE687B0B0FDL : 0x165667B19E3779F9L;
+			fingerprint0 += mix(symbolHashes[2 * symbol] + value);
+			fingerprint1 += mix(symbolHashes[2 * symbol + 1] ^ value);
+		}
+		return new long[] {fingerprint0, fingerprint1};
+	}
+
+	private static long hash(String name, long seed) {
+		long h = seed;
+		for (int i = 0; i < name.length(); i++)
+			h = (h ^ name.charAt(i)) * 0x100000001B3L;
+		return mix(h);
+	}
+
+	/**
+	 * The finalizer of SplitMix64
+	 */
+	private static long mix(long h) {
+		h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+		h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+		return h ^ (h >>> 31);
+	}
+
+	/**
+	 * @return true if the models give the same values to the same names,
+	 * whatever the order of their literals
+	 */
+	static boolean sameLiterals(Model a, Model b) {
+		if (a.size() != b.size())
+			return false;
+		if (a.getSymbols() == b.getSymbols()) {
+			// Same names in the same order: the values are enough
+			boolean sameOrder = true;
+			for (int i = 0; i < a.size() && sameOrder; i++)
+				sameOrder = a.getSymbol(i) == b.getSymbol(i);
+			if (sameOrder)
+				return a.equals(b);
+		}
+		Map<String, Boolean> values = new HashMap<String, Boolean>(a.size() * 2);
+		for (int i = 0; i < a.size(); i++)
+			values.put(a.getName(i), a.isTrue(i));
+		for (int i = 0; i < b.size(); i++)
+			if (!Boolean.valueOf(b.isTrue(i)).equals(values.get(b.getName(i))))
+				return false;
+		return true;
+	}
+}
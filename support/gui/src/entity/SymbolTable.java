@@ -0,0 +1,80 @@
+/*
+ *
+ * Project TouIST, 2015. Easily formalize and solve real-world sized problems
+ * using propositional logic and linear theory of reals with a nice GUI.
+ *
+ * https://github.com/touist/touist
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl-2.1.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     Alexis Comte, Abdelwahab Heba, Olivier Lezaud,
+ *     Skander Ben Slimane, Maël Valais
+ *
+ */
+
+package entity;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The names of the literals of a problem, each one stored once and numbered
+ * 0, 1, 2... in the order they are first seen. The models of a problem share
+ * the same table and only keep the numbers (see Model).
+ *
+ * intern() can be called by several threads (e.g. a solver producing models
+ * in background); name() does not lock.
+ *
+ * @author Maël
+ */
+public class SymbolTable {
+	private final Map<String, Integer> ids = new HashMap<String, Integer>();
+	private volatile String[] names = new String[16];
+	private volatile int size = 0;
+
+	/**
+	 * @return the number of the name, which is added to the table if it was
+	 * not there yet
+	 */
+	public synchronized int intern(String name) {
+		Integer id = ids.get(name);
+		if (id != null)
+			return id;
+		if (size == names.length)
+			names = Arrays.copyOf(names, size * 2);
+		names[size] = name;
+		ids.put(name, size);
+		return size++;
+	}
+
+	/**
+	 * @return the number of the name, or -1 if it is not in the table
+	 */
+	public synchronized int indexOf(String name) {
+		Integer id = ids.get(name);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * @param id a number given by intern()
+	 */
+	public String name(int id) {
+		if (id < 0 || id >= size) // reading 'size' first makes names[id] visible
+			throw new IndexOutOfBoundsException("no symbol " + id);
+		return names[id];
+	}
+
+	public int size() {
+		return size;
+	}
+}
@@ -37,8 +37,12 @@ import java.util.Locale;
 import javax.imageio.ImageIO;
 import javax.swing.JPanel;
 
+import solution.IncrementalSession;
+import solution.ResultCache;
 import solution.ModelList;
 import solution.Solver;
+import solution.SolverExecutionException;
+import touist.Workspace;
 import translation.TranslatorSAT;
 import translation.TranslatorSMT;
 
@@ -50,6 +54,9 @@ public class MainFrame extends javax.swing.JFrame {
     private TranslatorSAT translatorSAT = new TranslatorSAT();
     private TranslatorSMT translatorSMT = new TranslatorSMT();
     private Solver solver;
+    private IncrementalSession incrementalSession = new IncrementalSession();
+    private ResultCache resultCache = new ResultCache();
+    private Workspace workspace;
     private ModelList models;
     private SolverSelection solverSelection = new SolverSelection(this);
 
@@ -130,6 +137,40 @@ public class MainFrame extends javax.swing.JFrame {
     public TranslatorSMT getTranslatorSMT() {
         return translatorSMT;
     }
+
+    /**
+     * @return the SAT solver that is kept alive from one "Solve" to the other
+     */
+    public IncrementalSession getIncrementalSession() {
+        return incrementalSession;
+    }
+
+    /**
+     * @return the results of the previous "Solve", kept on disk
+     */
+    public ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * Sets the workspace of the current "Solve" (the files of the translation
+     * that the solver reads); the previous one is closed.
+     * @param workspace can be null when the solve is over
+     */
+    public void setWorkspace(Workspace workspace) {
+        if (this.workspace != null && this.workspace != workspace) {
+            this.workspace.close();
+            // The models of that Solve (and their file, see ModelStore) go too
+            if (solver != null) {
+                try {
+                    solver.getModelList().close();
+                } catch (SolverExecutionException | UnsupportedOperationException e) {
+                    // no model list
+                }
+            }
+        }
+        this.workspace = workspace;
+    }
     
     public ResultsPanel getResultsPanel1() {
         return resultsPanel1;
@@ -15,11 +15,20 @@ public class SolverSelection {
 	private MainFrame m;
     public enum SolverType {
             SAT, 
+            SAT_PORTFOLIO,
+            SAT_PARALLEL,
             QF_LRA, 
             QF_LIA, 
             QF_RDL, 
             QF_IDL,
-            QBF
+            QBF;
+
+            /**
+             * @return true if this solver takes the "sat" language
+             */
+            public boolean isSat() {
+                return this == SAT || this == SAT_PORTFOLIO || this == SAT_PARALLEL;
+            }
     };
     
     private SolverType selectedSolver = SolverType.SAT;
@@ -34,7 +43,7 @@ public class SolverSelection {
     
     public void setSelectedSolver(SolverType solverType) {
         this.selectedSolver = solverType;
-        if(selectedSolver == SolverType.SAT) {
+        if(selectedSolver.isSat()) {
         	m.getEditorPanel1().getEditor().getEditorTextArea().setSyntaxEditingStyle("sat");
         } else if(selectedSolver == SolverType.QBF) {
         	m.getEditorPanel1().getEditor().getEditorTextArea().setSyntaxEditingStyle("qbf");
@@ -26,6 +26,7 @@ import org.scilab.forge.jlatexmath.TeXConstants;
 import org.scilab.forge.jlatexmath.TeXFormula;
 import org.scilab.forge.jlatexmath.TeXIcon;
 
+import touist.ProcessEvent;
 import translation.TranslationError;
 
 /**
@@ -93,31 +94,36 @@ public class TranslationLatex {
 		
         System.out.println("latexify(): cmd executed: "+cmd.toString());
 		
+        ProcessEvent event = ProcessEvent.begin(cmd);
         this.p = Runtime.getRuntime().exec(cmd.toArray(new String[0]));
 
         BufferedWriter toProcess = new BufferedWriter(new OutputStreamWriter(p.getOutputStream()));
         String s = "";
+        long inputSize = 0;
         while ((s = reader.readLine())!=null) {
         	toProcess.write(s + "\n");
+        	inputSize += ProcessEvent.utf8Length(s) + 1;
         }
         toProcess.flush();
         toProcess.close();
+        event.setInputSize(inputSize);
 		
         int return_code = p.waitFor();
         
-		BufferedReader fromProcess = new BufferedReader(new InputStreamReader(p.getInputStream()));
+		BufferedReader fromProcess = new BufferedReader(new InputStreamReader(event.count(p.getInputStream())));
 		String linesStdout = "";
 		while (fromProcess.ready())
 			linesStdout += fromProcess.readLine() + "\n";;
 
 		BufferedReader fromProcessErr = new BufferedReader(new InputStreamReader(
-				this.p.getErrorStream()));
+				event.count(this.p.getErrorStream())));
 		String linesStdErr = "";
 		while (fromProcessErr.ready()) {
 			linesStdErr += fromProcessErr.readLine() + "\n";
 		}
 		fromProcessErr.close();
 		fromProcess.close();
+		event.end(return_code);
 
 		errors = TranslationError.parse(linesStdErr);
 		
@@ -27,6 +27,7 @@ import gui.AbstractComponentPanel;
 import gui.TranslatorLatex.TranslationLatex;
 import gui.editionView.editor.Editor;
 import gui.editionView.editor.ErrorParser;
+import touist.Metrics;
 
 import java.awt.BorderLayout;
 import java.awt.FlowLayout;
@@ -74,9 +75,11 @@ public class EditionPanel extends AbstractComponentPanel {
     }
     
     public void setLatex(String latex) {
+    	long start = System.nanoTime();
     	TeXFormula formula = new TeXFormula(latex);
 	    TeXIcon ti = formula.createTeXIcon(TeXConstants.ALIGN_TOP, 20+zoom);
 	    latexLabel.setIcon(ti);
+	    Metrics.timer(Metrics.LATEX_RENDERING).since(start);
     }
     
     public void zoom(int step) {
@@ -37,7 +37,10 @@ import java.awt.Robot;
 import java.awt.event.KeyEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.io.*;
+import java.math.BigInteger;
 import java.nio.file.FileSystems;
 import java.nio.file.Path;
 import java.util.ListIterator;
@@ -49,11 +52,20 @@ import javax.swing.filechooser.FileNameExtensionFilter;
 import org.kordamp.ikonli.fontawesome.FontAwesomeIkonHandler;
 import org.kordamp.ikonli.swing.FontIcon;
 import solution.SolverExecutionException;
+import solution.SolverParallel;
+import solution.SolverPortfolio;
 import solution.SolverQBF;
+import solution.IncrementalSession;
+import solution.ModelCounter;
+import solution.ResultCache;
 import solution.SolverSMT;
 import solution.SolverTestSAT4J;
+import touist.Metrics;
 import touist.TouIST;
+import touist.Workspace;
+import translation.DimacsDigest;
 import translation.TranslationError;
+import translation.TranslatorSAT;
 
 /**
  *
@@ -66,6 +78,12 @@ public class ParentEditionPanel extends AbstractComponentPanel {
     private Thread testThread;
     private Path openedFile = null;
     final protected MainFrame mainframe;
+    /**
+     * The count in progress (see countModels()) and its dialog; only used
+     * on the EDT
+     */
+    private ModelCounter counter = null;
+    private JDialog countDialog = null;
 
 
     public void setOpenedFile(Path file) {
@@ -160,13 +178,16 @@ public class ParentEditionPanel extends AbstractComponentPanel {
                             "", JOptionPane.YES_NO_CANCEL_OPTION);
                     if (confirmed == JOptionPane.YES_OPTION) {
                         saveHandler(false);
+                        stopCount();
                         System.exit(0);
                     } else if (confirmed == JOptionPane.NO_OPTION) {
+                        stopCount();
                         System.exit(0);
                     } else if (confirmed == JOptionPane.CANCEL_OPTION) {
                         return;
                     }
                 } else {
+                    stopCount();
                     System.exit(0);
                 }
             }
@@ -352,7 +373,7 @@ public class ParentEditionPanel extends AbstractComponentPanel {
 
                 Process p = null;
 
-                if (getFrame().getSolverSelection().getSelectedSolver() == SolverSelection.SolverType.SAT) {
+                if (getFrame().getSolverSelection().getSelectedSolver().isSat()) {
                     p = getFrame().getTranslatorSAT().getP();
                 } else {
                     p = getFrame().getTranslatorSMT().getP();
@@ -368,6 +389,9 @@ public class ParentEditionPanel extends AbstractComponentPanel {
                 Runnable r = new Runnable() {
                     public void run() {
                         State state = initResultView();
+                        if (state == State.EDITION) {
+                            getFrame().setWorkspace(null); // nothing to show, the files can go
+                        }
                         solveButton.setText(getFrame().getLang().getWord("ParentEditionPanel.testButton.text"));
                         isStopInsteadOfTest = false;
                         if (state != State.EDITION) {
@@ -537,6 +561,135 @@ public class ParentEditionPanel extends AbstractComponentPanel {
         }
     }
     
+    /**
+     * Counts the models of the SAT problem in the editor without enumerating
+     * them (see ModelCounter); the count is done in background while a
+     * dialog lets the user cancel it. A count already running is stopped.
+     */
+    public void countModels() {
+        if (!getFrame().getSolverSelection().getSelectedSolver().isSat()) {
+            showErrorMessage(getFrame().getLang().getWord("ParentEditionPanel.countModels.onlySat"),
+                    getFrame().getLang().getWord("EditionMenuBar.jMenuItemCountModels"));
+            return;
+        }
+        stopCount();
+        // A workspace of its own: a Solve can run meanwhile
+        final Workspace workspace;
+        final String path;
+        try {
+            workspace = Workspace.create("count");
+            path = workspace.getPath("count.touist");
+            editor.saveToFile(path);
+        } catch (IOException ex) {
+            showErrorMessage("Couldn't create the file to count:\n" + ex.getMessage(),
+                    getFrame().getLang().getWord(Lang.ERROR_TRADUCTION));
+            return;
+        }
+        final ModelCounter counter = new ModelCounter();
+        this.counter = counter;
+        showCountDialog();
+        Runnable r = new Runnable() {
+            public void run() {
+                // Not the translator of the frame: a Solve can run meanwhile
+                TranslatorSAT translator = new TranslatorSAT();
+                try {
+                    if (!translator.translate(path, counter)) {
+                        String errorMessage = "";
+                        for (TranslationError error : translator.getErrors()) {
+                            errorMessage += error + "\n";
+                        }
+                        final String message = errorMessage;
+                        SwingUtilities.invokeLater(new Runnable() {
+                            public void run() {
+                                if (countEnded(counter))
+                                    showErrorMessage(message, getFrame().getLang().getWord(Lang.ERROR_TRADUCTION));
+                            }
+                        });
+                        return;
+                    }
+                    // null if the count has been stopped (see stopCount())
+                    final BigInteger count = counter.count();
+                    SwingUtilities.invokeLater(new Runnable() {
+                        public void run() {
+                            if (countEnded(counter) && count != null)
+                                JOptionPane.showMessageDialog(getParent(),
+                                        getFrame().getLang().getWord("ParentEditionPanel.countModels.result") + count,
+                                        getFrame().getLang().getWord("EditionMenuBar.jMenuItemCountModels"),
+                                        JOptionPane.INFORMATION_MESSAGE);
+                        }
+                    });
+                } catch (final IOException | InterruptedException ex) {
+                    ex.printStackTrace();
+                    SwingUtilities.invokeLater(new Runnable() {
+                        public void run() {
+                            if (countEnded(counter))
+                                showErrorMessage(ex, "Couldn't count the models: \n" + ex.getMessage(),
+                                        getFrame().getLang().getWord(Lang.ERROR_TRADUCTION));
+                        }
+                    });
+                } finally {
+                    workspace.close();
+                }
+            }
+        };
+        new Thread(r, "count-models").start();
+    }
+
+    /**
+     * Shows the (non-modal) dialog of the count in progress; its Cancel
+     * button stops the count.
+     */
+    private void showCountDialog() {
+        String cancel = getFrame().getLang().getWord("ParentEditionPanel.countModels.cancel");
+        JOptionPane pane = new JOptionPane(
+                getFrame().getLang().getWord("ParentEditionPanel.countModels.progress"),
+                JOptionPane.INFORMATION_MESSAGE, JOptionPane.DEFAULT_OPTION,
+                null, new Object[] {cancel});
+        final JDialog dialog = pane.createDialog(getParent(),
+                getFrame().getLang().getWord("EditionMenuBar.jMenuItemCountModels"));
+        dialog.setModal(false);
+        // Cancel (or closing the dialog) sets the value of the pane
+        pane.addPropertyChangeListener(JOptionPane.VALUE_PROPERTY, new PropertyChangeListener() {
+            public void propertyChange(PropertyChangeEvent e) {
+                if (countDialog == dialog)
+                    stopCount();
+            }
+        });
+        countDialog = dialog;
+        dialog.setVisible(true);
+    }
+
+    /**
+     * Stops the count in progress, if any, and closes its dialog.
+     */
+    private void stopCount() {
+        if (counter != null) {
+            System.out.println("stopCount(): the count has been stopped");
+            counter.stop();
+            counter = null;
+        }
+        if (countDialog != null) {
+            countDialog.dispose();
+            countDialog = null;
+        }
+    }
+
+    /**
+     * Called on the EDT when the thread of a count ends.
+     * @return true if the result of this count must be shown, i.e. it has
+     * not been stopped meanwhile
+     */
+    private boolean countEnded(ModelCounter ended) {
+        if (counter != ended)
+            return false;
+        counter = null;
+        if (countDialog != null) {
+            countDialog.dispose();
+            countDialog = null;
+        }
+        return true;
+    }
+
     private void showErrorMessage(String message, String title) {
         popupMessage.showMessageDialog(getParent(), 
                         message, 
@@ -587,13 +740,27 @@ public class ParentEditionPanel extends AbstractComponentPanel {
         sinon passer à l'état SINGLE_RESULT
         Si aucun model n'existe alors passer a l'état NO_RESULT
         */
-        String path = touist.TouIST.checkPath(touist.TouIST.getWhereToSaveTemp() + File.separator + "temp.touist");
+        // Every Solve has its own directory (closed by MainFrame.setWorkspace()
+        // when the next Solve starts or when the results are left)
+        Workspace workspace;
+        try {
+            workspace = Workspace.create("solve");
+        } catch (IOException ex) {
+            showErrorMessage("Couldn't create the workspace of the Solve:\n" + ex.getMessage(), getFrame().getLang().getWord(Lang.ERROR_TRADUCTION));
+            return State.EDITION;
+        }
+        getFrame().setWorkspace(workspace);
+        getFrame().getTranslatorSAT().setWorkspace(workspace);
+        getFrame().getTranslatorSMT().setWorkspace(workspace);
+        String path = workspace.getPath("temp.touist");
         File touistFile = new File(path); //TODO se mettre d'accord sur un nom standard ou ajouter a Translator et BaseDeClause des méthode pour s'échange de objets File
         String errorMessage;
         
         
         try {
+            long start = System.nanoTime();
             editor.saveToFile(touistFile.getAbsolutePath());
+            Metrics.timer(Metrics.SOURCE_SAVE).since(start);
         } catch (IOException ex) {
             errorMessage = "Couldn't create file '" + touistFile.getAbsolutePath() + "':\n"+ex.getMessage()+"\nPath: "+path;
             showErrorMessage(errorMessage, getFrame().getLang().getWord(Lang.ERROR_TRADUCTION));
@@ -604,9 +771,26 @@ public class ParentEditionPanel extends AbstractComponentPanel {
         solveButton.setText("Translating");
 
         if (getFrame().getEditorPanel1().editor.getEditorTextArea().getSyntaxEditingStyle() == "sat") {
-           
+            // The solver runs inside the GUI JVM unless the user asked for the
+            // minisat.jar process (java -Dtouist.externalSolver=true)
+            boolean externalSolver = "true".equals(System.getProperty("touist.externalSolver"));
+            // The portfolio gives the same DIMACS file to several solvers
+            boolean portfolio = getFrame().getSolverSelection().getSelectedSolver() == SolverType.SAT_PORTFOLIO;
+            // The parallel enumeration also gives the DIMACS file to several solvers
+            boolean parallel = getFrame().getSolverSelection().getSelectedSolver() == SolverType.SAT_PARALLEL;
+            // The in-process solver loads the clauses while touist prints them;
+            // it is kept between two "Solve" and only receives what has changed
+            IncrementalSession session = getFrame().getIncrementalSession();
+            // The hash of the streamed translation is the key of the result cache
+            DimacsDigest digest = null;
             try {
-            	boolean ok = getFrame().getTranslatorSAT().translate(touistFile.getAbsolutePath());
+            	boolean ok;
+            	if (externalSolver || portfolio || parallel) {
+            		ok = getFrame().getTranslatorSAT().translate(touistFile.getAbsolutePath());
+            	} else {
+            		digest = new DimacsDigest(session);
+            		ok = getFrame().getTranslatorSAT().translate(touistFile.getAbsolutePath(), digest);
+            	}
             	errorMessage = "";
                 for (TranslationError error : getFrame().getTranslatorSAT().getErrors()) {
                         errorMessage += error + "\n";
@@ -636,13 +820,49 @@ public class ParentEditionPanel extends AbstractComponentPanel {
 
             solveButton.setText("Solving");
 
-            //Add CurrentPath/dimacsFile
-            String translatedFilePath = getFrame().getTranslatorSAT().getDimacsFilePath();
-            Map<Integer, String> literalsMap = getFrame().getTranslatorSAT().getLiteralsMap();
-            getFrame().setSolver(new SolverTestSAT4J(translatedFilePath, literalsMap));
+            if (portfolio) {
+                String translatedFilePath = getFrame().getTranslatorSAT().getDimacsFilePath();
+                Map<Integer, String> literalsMap = getFrame().getTranslatorSAT().getLiteralsMap();
+                getFrame().setSolver(new SolverPortfolio(translatedFilePath, literalsMap));
+            } else if (parallel) {
+                String translatedFilePath = getFrame().getTranslatorSAT().getDimacsFilePath();
+                Map<Integer, String> literalsMap = getFrame().getTranslatorSAT().getLiteralsMap();
+                getFrame().setSolver(new SolverParallel(translatedFilePath, literalsMap));
+            } else if (externalSolver) {
+                //Add CurrentPath/dimacsFile
+                String translatedFilePath = getFrame().getTranslatorSAT().getDimacsFilePath();
+                Map<Integer, String> literalsMap = getFrame().getTranslatorSAT().getLiteralsMap();
+                getFrame().setSolver(new SolverTestSAT4J(translatedFilePath, literalsMap));
+            } else {
+                getFrame().setSolver(session.update());
+            }
+
+            // The same problem solved with the same solver gives the same
+            // models: the first ones are taken from the cache if possible
+            if (!"false".equals(System.getProperty("touist.resultCache"))) {
+                String problemHash = null;
+                if (digest != null) {
+                    problemHash = digest.getHash();
+                } else {
+                    try {
+                        problemHash = DimacsDigest.hashFiles(getFrame().getTranslatorSAT().getDimacsFilePath(),
+                                getFrame().getTranslatorSAT().getLiteralsMap());
+                    } catch (IOException ex) {
+                        System.err.println("initResultView(): the result cache is not used: " + ex.getMessage());
+                    }
+                }
+                if (problemHash != null) {
+                    String key = ResultCache.key(problemHash, "solver="
+                            + getFrame().getSolverSelection().getSelectedSolver().name()
+                            + (externalSolver ? ",external" : ""));
+                    getFrame().setSolver(getFrame().getResultCache().wrap(key, getFrame().getSolver()));
+                }
+            }
 
+            long start = System.nanoTime();
             try {
                 getFrame().getSolver().launch();
+                Metrics.timer(Metrics.SOLVER_LAUNCH).since(start);
             } catch (IOException ex) {
                 ex.printStackTrace();
                 errorMessage = "Couldn't launch solver.";
@@ -656,7 +876,10 @@ public class ParentEditionPanel extends AbstractComponentPanel {
             // Si il y a au moins un model
             try {
                 ListIterator<Model> iter = getFrame().getSolver().getModelList().iterator();
-                if(!iter.hasNext()) {
+                boolean sat = iter.hasNext();
+                // From the launch of the solver to the first model (or UNSAT)
+                Metrics.timer(Metrics.FIRST_MODEL).since(start);
+                if(!sat) {
                     System.out.println("This problem is unsatisfiable");
                     errorMessage = "There is no solution";
                     showErrorMessage(errorMessage, "Solver error");
@@ -9,6 +9,7 @@ import org.fife.ui.rsyntaxtextarea.parser.ParseResult;
 
 import gui.TranslatorLatex.TranslationLatex;
 import gui.editionView.EditionPanel;
+import touist.Metrics;
 import translation.TranslationError;
 
 public class ErrorParser extends AbstractParser {
@@ -27,8 +28,10 @@ public class ErrorParser extends AbstractParser {
 			return result;
 		if(bufferErrors == null) {
 			try {
+				long start = System.nanoTime();
 				TranslationLatex tr = new TranslationLatex(code.getText(0, code.getLength()), lang, true);
 				bufferErrors = tr.getErrors();
+				Metrics.timer(Metrics.LINT).since(start);
 				if (tr.getFormula().length() != 0 && edition != null) {
 					edition.setLatex(tr.getFormula());
 				}
@@ -67,6 +67,7 @@ public class EditionMenuBar extends JMenuBar {
     JMenuItem jMenuItemLoadFile;
     JMenuItem jMenuItemQuit;
     JMenuItem jMenuItemSolve;
+    JMenuItem jMenuItemCountModels;
     JMenuItem jMenuItemHelpEditor;
     JMenuItem jMenuItemAbout;
     JMenuItem jMenuItemUndo;
@@ -102,6 +103,7 @@ public class EditionMenuBar extends JMenuBar {
         //jMenuItemQuit.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Q, meta));
         jMenuItemSolve = new JMenuItem();
         jMenuItemSolve.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_M, meta));
+        jMenuItemCountModels = new JMenuItem();
         
         jMenuItemUndo = new JMenuItem();
         jMenuItemUndo.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Z, meta));
@@ -156,6 +158,9 @@ public class EditionMenuBar extends JMenuBar {
         jMenuItemSolve.addActionListener(new ActionListener() {
             public void actionPerformed(ActionEvent evt) { jMenuItemSolveActionPerformed(evt); }
         });
+        jMenuItemCountModels.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent evt) { jMenuItemCountModelsActionPerformed(evt); }
+        });
         
         jMenuItemHelpEditor.addActionListener(new ActionListener() {
             public void actionPerformed(ActionEvent evt) {
@@ -240,6 +245,7 @@ public class EditionMenuBar extends JMenuBar {
         jMenuFile.add(jMenuItemSaveAsFile);
         jMenuFile.add(jMenuItemLoadFile);
         jMenuFile.add(jMenuItemSolve);
+        jMenuFile.add(jMenuItemCountModels);
         jMenuFile.add(jMenuItemQuit);
         jMenuLanguage.add(jMenuItemFrench);
         jMenuLanguage.add(jMenuItemEnglish);
@@ -295,6 +301,9 @@ public class EditionMenuBar extends JMenuBar {
     private void jMenuItemSolveActionPerformed(ActionEvent evt) {
         parent.getEditorPanel1().solve();
     }
+    private void jMenuItemCountModelsActionPerformed(ActionEvent evt) {
+        parent.getEditorPanel1().countModels();
+    }
     
     private void jMenuItemHelpEditorActionPerformed(ActionEvent evt) {  
 		// create jeditorpane
@@ -386,6 +395,7 @@ public class EditionMenuBar extends JMenuBar {
         this.jMenuItemLoadFile.setText(parent.getLang().getWord(Lang.EDITION_MENUITEM_LOADFILE));
         this.jMenuItemQuit.setText(parent.getLang().getWord("EditionMenuBar.jMenuItemQuit.text"));
         this.jMenuItemSolve.setText(parent.getLang().getWord("EditionMenuBar.jMenuItemSolve"));
+        this.jMenuItemCountModels.setText(parent.getLang().getWord("EditionMenuBar.jMenuItemCountModels"));
         this.jMenuItemHelpEditor.setText(parent.getLang().getWord(Lang.EDITION_MENUITEM_HELPEDITION));
         this.jMenuItemAbout.setText(parent.getLang().getWord(Lang.EDITION_MENUITEM_ABOUT));
         this.jMenuItemUndo.setText(parent.getLang().getWord(Lang.EDITION_MENUITEM_UNDO));
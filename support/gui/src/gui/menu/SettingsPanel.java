@@ -42,6 +42,8 @@ public class SettingsPanel extends AbstractComponentPanel {
         
         switch(parent.getSolverSelection().getSelectedSolver()) {
             case SAT : 
+            case SAT_PORTFOLIO :
+            case SAT_PARALLEL :
                 SAT4J.setSelected(true);
                 break;
             case QF_LRA : 
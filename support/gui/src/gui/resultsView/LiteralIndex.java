@@ -0,0 +1,161 @@
+/*
+ *
+ * Project TouIST, 2015. Easily formalize and solve real-world sized problems
+ * using propositional logic and linear theory of reals with a nice GUI.
+ *
+ * https://github.com/touist/touist
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl-2.1.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     Alexis Comte, Abdelwahab Heba, Olivier Lezaud,
+ *     Skander Ben Slimane, Maël Valais
+ *
+ */
+
+package gui.resultsView;
+
+import entity.Model;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An index of the names of the literals of a model, so that the usual
+ * filters of the results view do not run the regex on every name:
+ * - "^text" (a prefix): binary search in the sorted names;
+ * - "text" (a substring, e.g. "cell\(1,"): the literals whose name contains
+ *   every trigram (3 consecutive chars) of the text, then String.contains()
+ *   on them only.
+ * The other regexes are not answered by the index (see matches()).
+ *
+ * The names only are indexed: the index can be used for all the models that
+ * have the same literals in the same order (see ResultTableModel).
+ *
+ * @author Maël
+ */
+public class LiteralIndex {
+    private static final String META = "\\^$.|?*+()[]{}";
+
+    private final Model model;
+    private final int[] byName; // the literals sorted by name
+    private final String[] sortedNames;
+    private final Map<Long, int[]> trigrams = new HashMap<Long, int[]>();
+
+    /**
+     * @param byName the literals of the model sorted by name (see
+     * ResultTableModel.sortByName())
+     */
+    public LiteralIndex(Model model, int[] byName) {
+        this.model = model;
+        this.byName = byName;
+        sortedNames = new String[byName.length];
+        for (int i = 0; i < byName.length; i++)
+            sortedNames[i] = model.getName(byName[i]);
+        // The posting lists, filled in the order of the literals: postings
+        // [0] is the number of literals in the list
+        Map<Long, int[]> postings = new HashMap<Long, int[]>();
+        for (int literal = 0; literal < model.size(); literal++) {
+            String name = model.getName(literal);
+            for (int i = 0; i + 3 <= name.length(); i++) {
+                Long key = trigram(name, i);
+                int[] list = postings.get(key);
+                if (list == null)
+                    postings.put(key, list = new int[] {0, 0, 0, 0});
+                if (list[0] > 0 && list[list[0]] == literal)
+                    continue; // twice in the same name
+                if (list[0] + 1 == list.length)
+                    postings.put(key, list = Arrays.copyOf(list, list.length * 2));
+                list[++list[0]] = literal;
+            }
+        }
+        for (Map.Entry<Long, int[]> entry : postings.entrySet()) {
+            int[] list = entry.getValue();
+            trigrams.put(entry.getKey(), Arrays.copyOfRange(list, 1, list[0] + 1));
+        }
+    }
+
+    /**
+     * @return the literals whose name is matched by the regex (with find()),
+     * or null if the index cannot tell (the regex must be run on each name)
+     */
+    public BitSet matches(String regex) {
+        boolean prefix = regex.startsWith("^");
+        String text = plainText(prefix ? regex.substring(1) : regex);
+        if (text == null)
+            return null;
+        BitSet matches = new BitSet(model.size());
+        if (prefix) {
+            int from = lowerBound(text);
+            for (int i = from; i < sortedNames.length && sortedNames[i].startsWith(text); i++)
+                matches.set(byName[i]);
+        } else if (text.length() < 3) {
+            for (int literal = 0; literal < model.size(); literal++)
+                if (model.getName(literal).contains(text))
+                    matches.set(literal);
+        } else {
+            // The shortest posting list, checked with contains()
+            int[] shortest = null;
+            for (int i = 0; i + 3 <= text.length(); i++) {
+                int[] list = trigrams.get(trigram(text, i));
+                if (list == null)
+                    return matches; // no name has this trigram
+                if (shortest == null || list.length < shortest.length)
+                    shortest = list;
+            }
+            for (int literal : shortest)
+                if (model.getName(literal).contains(text))
+                    matches.set(literal);
+        }
+        return matches;
+    }
+
+    /**
+     * @return the text matched by the regex if it has no special character
+     * (but escaped ones, e.g. "cell\(1"), else null
+     */
+    static String plainText(String regex) {
+        StringBuilder text = new StringBuilder(regex.length());
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 == regex.length() || Character.isLetterOrDigit(regex.charAt(i + 1)))
+                    return null; // \d, \Q...: not plain text
+                text.append(regex.charAt(++i));
+            } else if (META.indexOf(c) != -1)
+                return null;
+            else
+                text.append(c);
+        }
+        return text.toString();
+    }
+
+    /**
+     * @return the index of the first sorted name >= text
+     */
+    private int lowerBound(String text) {
+        int low = 0, high = sortedNames.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sortedNames[middle].compareTo(text) < 0)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    private static Long trigram(String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+}
@@ -0,0 +1,440 @@
+/*
+ *
+ * Project TouIST, 2015. Easily formalize and solve real-world sized problems
+ * using propositional logic and linear theory of reals with a nice GUI.
+ *
+ * https://github.com/touist/touist
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl-2.1.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     Alexis Comte, Abdelwahab Heba, Olivier Lezaud,
+ *     Skander Ben Slimane, Maël Valais
+ *
+ */
+
+package gui.resultsView;
+
+import entity.Model;
+
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import javax.swing.JTable;
+import javax.swing.SwingWorker;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * The rows (name, value) of the results table: a view over the literals of
+ * the model shown, through an array of the indexes of the literals that pass
+ * the filter, in the sort order. Nothing is copied from the model.
+ *
+ * The table is sorted here rather than by a RowSorter (which sorts again on
+ * every change): the orders by name and by value are computed once per
+ * model, and the order by name is reused for the next models when they have
+ * the same literals (which is the case for the models of a SAT solver).
+ *
+ * The rows are computed by a SwingWorker (a Query), not on the EDT: the rows
+ * found are added to the table as they come, and a new query cancels the
+ * previous one. The names are indexed (see LiteralIndex) so that the prefix
+ * and substring filters do not run the regex on every name.
+ *
+ * @author Maël
+ */
+public class ResultTableModel extends AbstractTableModel {
+    /**
+     * The number of literals filtered between two checks of the cancellation
+     * and two additions of rows to the table
+     */
+    private static final int CHUNK = 1 << 14;
+
+    private String[] columnNames = {"Name", "Value"};
+    private String trueText = "True";
+    private String falseText = "False";
+
+    private Model model = null; // the model asked by show()
+    // The rows shown and their model: until the query of 'model' gives its
+    // first rows, the table still shows the previous ones
+    private Model shownModel = null;
+    private int[] rows = new int[0]; // the literals shown, in the order of the rows
+    private int rowCount = 0;
+    private String regex = "";
+    private boolean trueLiterals = true;
+    private boolean falseLiterals = true;
+
+    private int sortColumn = 0;
+    private boolean ascending = true;
+
+    private Query query = null; // the last query started
+    private boolean updating = false; // until the last query is over
+
+    // The orders and the index of the literals of 'orderedModel' (set by
+    // the queries when they are over)
+    private Model orderedModel = null;
+    private int[] byName = null;
+    private int[] byValue = null;
+    private LiteralIndex index = null;
+
+    /**
+     * Shows the literals of the model that match the regex and the "show
+     * true/false literals" boxes (the literals with an arithmetic value are
+     * always shown). The rows are computed in background.
+     * @param model can be null (empty table)
+     * @param regex an invalid regex is ignored
+     */
+    public void show(Model model, String regex, boolean trueLiterals, boolean falseLiterals) {
+        this.model = model;
+        this.regex = regex;
+        this.trueLiterals = trueLiterals;
+        this.falseLiterals = falseLiterals;
+        update();
+    }
+
+    public void clear() {
+        show(null, regex, trueLiterals, falseLiterals);
+    }
+
+    public void setValueTexts(String trueText, String falseText) {
+        if (!trueText.equals(this.trueText) || !falseText.equals(this.falseText)) {
+            this.trueText = trueText;
+            this.falseText = falseText;
+            byValue = null; // the order by value depends on the texts
+            if (sortColumn == 1)
+                update();
+            else
+                fireTableDataChanged();
+        }
+    }
+
+    public void setColumnNames(String name, String value) {
+        columnNames = new String[] {name, value};
+    }
+
+    /**
+     * Sorts by the column; if the table is already sorted by this column,
+     * the order is reversed.
+     */
+    public void sortBy(int column) {
+        if (column == sortColumn)
+            ascending = !ascending;
+        else {
+            sortColumn = column;
+            ascending = true;
+        }
+        update();
+    }
+
+    /**
+     * Sorts the table when a column header is clicked, and shows the order
+     * in the headers.
+     */
+    public void installOn(final JTable table) {
+        table.setAutoCreateRowSorter(false);
+        table.setRowSorter(null);
+        table.getTableHeader().addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int column = table.columnAtPoint(e.getPoint());
+                if (column != -1) {
+                    sortBy(table.convertColumnIndexToModel(column));
+                    updateHeaders(table);
+                }
+            }
+        });
+        updateHeaders(table);
+    }
+
+    /**
+     * Gives the column names (with the sort order) to the headers.
+     */
+    public void updateHeaders(JTable table) {
+        for (int i = 0; i < table.getColumnCount(); i++) {
+            int column = table.convertColumnIndexToModel(i);
+            table.getColumnModel().getColumn(i).setHeaderValue(getColumnName(column));
+        }
+        table.getTableHeader().repaint();
+    }
+
+    /**
+     * @return true while rows are being computed
+     */
+    public boolean isUpdating() {
+        return updating;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return 2;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        if (column == sortColumn)
+            return columnNames[column] + (ascending ? " \u25B2" : " \u25BC");
+        return columnNames[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        int literal = rows[row];
+        return column == 0 ? shownModel.getName(literal) : value(shownModel, literal, trueText, falseText);
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return false;
+    }
+
+    private static String value(Model model, int literal, String trueText, String falseText) {
+        String value = model.getValue(literal);
+        if (value != null)
+            return value;
+        return model.isTrue(literal) ? trueText : falseText;
+    }
+
+    private void update() {
+        if (query != null)
+            query.cancel(false);
+        query = null;
+        updating = false;
+        if (model == null) {
+            shownModel = null;
+            rowCount = 0;
+            fireTableDataChanged();
+            return;
+        }
+        query = new Query();
+        updating = true;
+        query.execute();
+    }
+
+    /**
+     * Computes the rows of the table for the current model, filter and
+     * sort order. The rows replace the previous ones when the first ones
+     * are found (the table is not emptied meanwhile).
+     */
+    private class Query extends SwingWorker<Void, int[]> {
+        private final Model model = ResultTableModel.this.model;
+        private final String regex = ResultTableModel.this.regex;
+        private final boolean trueLiterals = ResultTableModel.this.trueLiterals;
+        private final boolean falseLiterals = ResultTableModel.this.falseLiterals;
+        private final int sortColumn = ResultTableModel.this.sortColumn;
+        private final boolean ascending = ResultTableModel.this.ascending;
+        private final String trueText = ResultTableModel.this.trueText;
+        private final String falseText = ResultTableModel.this.falseText;
+        private final boolean sameNames = model == orderedModel || sameLiterals(model, orderedModel);
+        private int[] byName = sameNames ? ResultTableModel.this.byName : null;
+        private int[] byValue = model == orderedModel ? ResultTableModel.this.byValue : null;
+        private LiteralIndex index = sameNames ? ResultTableModel.this.index : null;
+        private boolean first = true;
+
+        @Override
+        protected Void doInBackground() {
+            if (byName == null)
+                byName = sortByName(model);
+            int[] order = byName;
+            if (sortColumn == 1) {
+                if (byValue == null)
+                    byValue = sortByValue(model, byName, trueText, falseText);
+                order = byValue;
+            }
+            Pattern pattern = null;
+            BitSet matches = null;
+            if (!regex.isEmpty()) {
+                if (index == null)
+                    index = new LiteralIndex(model, byName);
+                matches = index.matches(regex);
+                if (matches == null)
+                    pattern = compile(regex);
+            }
+            int[] chunk = new int[CHUNK];
+            for (int from = 0; from < order.length && !isCancelled(); from += CHUNK) {
+                int to = Math.min(order.length, from + CHUNK);
+                int count = filter(model, order, ascending, pattern, matches, trueLiterals, falseLiterals,
+                        from, to, chunk);
+                if (count > 0)
+                    publish(Arrays.copyOf(chunk, count));
+            }
+            return null;
+        }
+
+        @Override
+        protected void process(List<int[]> chunks) {
+            if (query != this || isCancelled())
+                return;
+            for (int[] chunk : chunks) {
+                if (first) {
+                    shownModel = model;
+                    rowCount = 0;
+                    rows = new int[Math.max(rows.length, chunk.length)];
+                }
+                if (rowCount + chunk.length > rows.length)
+                    rows = Arrays.copyOf(rows, Math.max(rowCount + chunk.length, rows.length * 2));
+                System.arraycopy(chunk, 0, rows, rowCount, chunk.length);
+                rowCount += chunk.length;
+                if (first)
+                    fireTableDataChanged();
+                else
+                    fireTableRowsInserted(rowCount - chunk.length, rowCount - 1);
+                first = false;
+            }
+        }
+
+        @Override
+        protected void done() {
+            if (query != this || isCancelled())
+                return;
+            updating = false;
+            if (first) { // no row
+                shownModel = model;
+                rowCount = 0;
+                fireTableDataChanged();
+            }
+            orderedModel = model;
+            ResultTableModel.this.byName = byName;
+            ResultTableModel.this.byValue = byValue;
+            ResultTableModel.this.index = index;
+        }
+    }
+
+    /**
+     * @return true if the models have the same names in the same order
+     */
+    private static boolean sameLiterals(Model a, Model b) {
+        if (a == null || b == null || a.size() != b.size() || a.getSymbols() != b.getSymbols())
+            return false;
+        for (int i = 0; i < a.size(); i++)
+            if (a.getSymbol(i) != b.getSymbol(i))
+                return false;
+        return true;
+    }
+
+    /**
+     * @return the indexes of the literals of the model, sorted by name
+     */
+    static int[] sortByName(final Model model) {
+        Integer[] order = new Integer[model.size()];
+        for (int i = 0; i < order.length; i++)
+            order[i] = i;
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return model.getName(a).compareTo(model.getName(b));
+            }
+        });
+        int[] sorted = new int[order.length];
+        for (int i = 0; i < sorted.length; i++)
+            sorted[i] = order[i];
+        return sorted;
+    }
+
+    /**
+     * @param byName the literals sorted by name
+     * @return the literals sorted by value, then by name
+     */
+    private static int[] sortByValue(final Model model, int[] byName, final String trueText,
+            final String falseText) {
+        boolean arithmetic = false;
+        for (int i = 0; i < model.size() && !arithmetic; i++)
+            arithmetic = model.getValue(i) != null;
+        int[] sorted = new int[byName.length];
+        if (!arithmetic) {
+            // Two values only: the literals of each value, in the order by name
+            boolean falseFirst = falseText.compareTo(trueText) <= 0;
+            int at = 0;
+            for (int pass = 0; pass < 2; pass++) {
+                boolean value = (pass == 0) != falseFirst;
+                for (int literal : byName)
+                    if (model.isTrue(literal) == value)
+                        sorted[at++] = literal;
+            }
+            return sorted;
+        }
+        Integer[] order = new Integer[byName.length];
+        for (int i = 0; i < order.length; i++)
+            order[i] = byName[i];
+        Arrays.sort(order, new Comparator<Integer>() { // stable: by name when equal
+            @Override
+            public int compare(Integer a, Integer b) {
+                return value(model, a, trueText, falseText).compareTo(value(model, b, trueText, falseText));
+            }
+        });
+        for (int i = 0; i < sorted.length; i++)
+            sorted[i] = order[i];
+        return sorted;
+    }
+
+    /**
+     * @return the pattern, or null if the regex is invalid (ignored)
+     */
+    private static Pattern compile(String regex) {
+        try {
+            return Pattern.compile(regex);
+        } catch (PatternSyntaxException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Gives the literals shown in the table (all at once). Package-private
+     * for the benchmarks (see jmh/).
+     * @param order the literals of the model, sorted
+     * @param index the index of the names of the model, can be null
+     * @param regex an invalid regex is ignored
+     * @return the literals of 'order' that match the regex and the "show
+     * true/false literals" boxes, in the same order (or in reverse order)
+     */
+    static int[] filter(Model model, int[] order, boolean ascending, LiteralIndex index, String regex,
+            boolean trueLiterals, boolean falseLiterals) {
+        BitSet matches = regex.isEmpty() || index == null ? null : index.matches(regex);
+        Pattern pattern = regex.isEmpty() || matches != null ? null : compile(regex);
+        int[] rows = new int[order.length];
+        int count = filter(model, order, ascending, pattern, matches, trueLiterals, falseLiterals,
+                0, order.length, rows);
+        return count == rows.length ? rows : Arrays.copyOf(rows, count);
+    }
+
+    /**
+     * Filters the rows [from, to[ of 'order' (or of its reverse).
+     * @param pattern null if the names are not filtered by a regex
+     * @param matches the literals whose name is matched (if not null)
+     * @param rows where the literals are written, from 0
+     * @return the number of literals written
+     */
+    private static int filter(Model model, int[] order, boolean ascending, Pattern pattern, BitSet matches,
+            boolean trueLiterals, boolean falseLiterals, int from, int to, int[] rows) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            int literal = order[ascending ? i : order.length - 1 - i];
+            if (model.getValue(literal) == null) {
+                if (matches != null ? !matches.get(literal)
+                        : pattern != null && !pattern.matcher(model.getName(literal)).find())
+                    continue;
+                boolean value = model.isTrue(literal);
+                if (value ? !trueLiterals : !falseLiterals)
+                    continue;
+            }
+            rows[count++] = literal;
+        }
+        return count;
+    }
+}
@@ -31,23 +31,29 @@ import gui.State;
 
 import java.awt.Color;
 import java.awt.Component;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.List;
 import java.util.ListIterator;
-import java.util.regex.Pattern;
-import java.util.regex.PatternSyntaxException;
 
 import javax.swing.JFileChooser;
 import javax.swing.JOptionPane;
 import javax.swing.JTable;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.event.DocumentEvent;
 import javax.swing.event.DocumentListener;
 import javax.swing.filechooser.FileNameExtensionFilter;
 import javax.swing.table.DefaultTableCellRenderer;
-import javax.swing.table.DefaultTableModel;
+
+import solution.ModelExporter;
+import solution.ModelList;
+import solution.ModelListIterator;
+import solution.SolverExecutionException;
 
 /**
  *
@@ -55,21 +61,35 @@ import javax.swing.table.DefaultTableModel;
  */
 public class ResultsPanel extends AbstractComponentPanel {
 
+    /**
+     * The table is filtered when nothing has been typed for a while
+     * (-Dtouist.filterDelay ms, 150 by default), not on every key.
+     */
     class RegexListener implements DocumentListener {
-        
+        private final Timer timer = new Timer(Integer.getInteger("touist.filterDelay", 150), new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                setResult();
+            }
+        });
+
+        RegexListener() {
+            timer.setRepeats(false);
+        }
+
          @Override
         public void insertUpdate(DocumentEvent e) {
-            setResult();
+            timer.restart();
         }
 
         @Override
         public void removeUpdate(DocumentEvent e) {
-            setResult();
+            timer.restart();
         }
         
         @Override
         public void changedUpdate(DocumentEvent e) {
-            setResult();
+            timer.restart();
         }
     }
     
@@ -87,17 +107,6 @@ public class ResultsPanel extends AbstractComponentPanel {
         }
     }
     
-    class ResultTableModel extends DefaultTableModel
-    {
-        public ResultTableModel(Object []o, int n){
-            super(o,n);
-        }
-        @Override
-        public boolean isCellEditable(int rowIndex,int columnIndex){
-		return false;
-	}
-    }
-    
     private int currentModelIndex = 0;
     ListIterator<Model> iter;
     Model actModel;
@@ -129,50 +138,28 @@ public class ResultsPanel extends AbstractComponentPanel {
         boolean trueLiterals = showTrueLiterals.isSelected();
         
         String regex = filterLiterals.getText();
-        Pattern pattern = null;
-        try {
-            pattern = Pattern.compile(regex);
-        } catch (PatternSyntaxException e) {
-            regex = "";
-        }
         
         String trueText = getFrame().getLang().getWord("ResultsPanel.trueText");
         String falseText = getFrame().getLang().getWord("ResultsPanel.falseText");
         
         ResultTableModel model = (ResultTableModel) literalsTable.getModel();
-        model.setNumRows(0);
-        ArrayList<Literal> literals = (ArrayList<Literal>) actModel.literals;
-        for(int i = 0; i < literals.size(); i++) {
-            String name = literals.get(i).getLiteral();
-            if(literals.get(i).getArithmetic_value()==null){
-                boolean value = literals.get(i).isLiteral_positivity();
-
-               if(regex!="" && !pattern.matcher(name).find()){
-                   continue;
-               }
-
-               if(falseLiterals && !value){
-                   model.addRow(new String[]{name,falseText});
-               } else if(trueLiterals && value){
-                   model.addRow(new String[]{name,trueText});
-               }   
-            }
-            else{
-                System.out.println(literals.get(i).getArithmetic_value());
-              model.addRow(new String[]{name,literals.get(i).getArithmetic_value()});
-            }
-        }
+        model.setValueTexts(trueText, falseText);
+        model.show(actModel, regex, trueLiterals, falseLiterals);
     }
     
     public void setEmpty(){
         ResultTableModel model = (ResultTableModel) literalsTable.getModel();
-        model.setNumRows(0);
+        model.clear();
     }
     
     public void exportModel() throws IOException {
         final JFileChooser fc = new JFileChooser(new File(System.getProperty("user.dir")));
         fc.setFileFilter(new FileNameExtensionFilter("Text files(txt, text)","txt","text"));
         fc.addChoosableFileFilter(new FileNameExtensionFilter("Latex files(latex)","tex"));
+        // All the models, written as the solver gives them (see ModelList.exportTo())
+        fc.addChoosableFileFilter(new FileNameExtensionFilter("All the models, CSV (csv)","csv"));
+        fc.addChoosableFileFilter(new FileNameExtensionFilter("All the models, JSON Lines (jsonl)","jsonl"));
+        fc.addChoosableFileFilter(new FileNameExtensionFilter("All the models, binary (bin)","bin"));
         fc.setAcceptAllFileFilterUsed(false);
         int returnVal = fc.showDialog(this,getFrame().getLang().getWord(Lang.RESULTS_FILE_CHOOSER));
         
@@ -180,6 +167,18 @@ public class ResultsPanel extends AbstractComponentPanel {
         String falseText = getFrame().getLang().getWord("ResultsPanel.falseText");
         
         if(returnVal == JFileChooser.APPROVE_OPTION){
+            String path = fc.getSelectedFile().getAbsolutePath();
+            ModelExporter.Format format = ModelExporter.Format.fromFileName(path);
+            if (format == null && fc.getFileFilter() instanceof FileNameExtensionFilter) {
+                String extension = ((FileNameExtensionFilter) fc.getFileFilter()).getExtensions()[0];
+                format = ModelExporter.Format.fromFileName("." + extension);
+                if (format != null)
+                    path += "." + extension;
+            }
+            if (format != null) {
+                exportModels(path, format);
+                return;
+            }
             String filename = fc.getSelectedFile().getName();
             String extension = (filename.contains(".")?filename.substring(filename.lastIndexOf("."),filename.length()):"txt");
             int result = JOptionPane.showConfirmDialog(null, exportDialog,"Format d'export",JOptionPane.DEFAULT_OPTION);
@@ -191,7 +190,7 @@ public class ResultsPanel extends AbstractComponentPanel {
                 String suffix = exportDialog.getSuffixValue();
                 
                 
-                ArrayList<Literal> literals = (ArrayList<Literal>) actModel.literals;
+                List<Literal> literals = actModel.literals;
                 for(int i = 0; i < literals.size(); i++) {
                     String left = exportDialog.getLeftValue()=="litteral"?literals.get(i).getLiteral():(literals.get(i).isLiteral_positivity()?trueText:falseText);
                     String right = exportDialog.getRightValue()=="litteral"?literals.get(i).getLiteral():(literals.get(i).isLiteral_positivity()?trueText:falseText);
@@ -206,6 +205,69 @@ public class ResultsPanel extends AbstractComponentPanel {
         }
     }
 
+    /**
+     * Exports the models (all of them or the first N) in background; the
+     * models given meanwhile by the solver are not kept, so Next and
+     * Previous are disabled until the export is over.
+     */
+    private void exportModels(final String path, final ModelExporter.Format format) {
+        String answer = JOptionPane.showInputDialog(this,
+                getFrame().getLang().getWord("ResultsPanel.exportModels.limit"), "");
+        if (answer == null)
+            return;
+        final long limit;
+        try {
+            limit = answer.trim().isEmpty() ? -1 : Long.parseLong(answer.trim());
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(this, "'" + answer + "' is not a number",
+                    "Export failure", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        final ModelList models;
+        try {
+            models = getFrame().getSolver().getModelList();
+        } catch (SolverExecutionException | UnsupportedOperationException e) {
+            JOptionPane.showMessageDialog(this, "These models cannot be exported: " + e.getMessage(),
+                    "Export failure", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        nextModel.setEnabled(false);
+        previousModel.setEnabled(false);
+        exportModel.setEnabled(false);
+        Runnable r = new Runnable() {
+            public void run() {
+                String message;
+                int type = JOptionPane.INFORMATION_MESSAGE;
+                try {
+                    message = getFrame().getLang().getWord("ResultsPanel.exportModels.result")
+                            + models.exportTo(path, format, limit);
+                } catch (IOException | SolverExecutionException e) {
+                    message = "Error during export: " + e.getMessage();
+                    type = JOptionPane.ERROR_MESSAGE;
+                }
+                final String m = message;
+                final int t = type;
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        exportModel.setEnabled(true);
+                        String text = m;
+                        // The models after the current one may have been
+                        // exported only: Next has nothing more to show
+                        if (models.isComplete() && (getState() == State.FIRST_RESULT
+                                || getState() == State.MIDDLE_RESULT) && !iter.hasNext()) {
+                            setState(State.LAST_RESULT);
+                            text += "\n" + getFrame().getLang().getWord("ResultsPanel.exportModels.noMoreModels");
+                        }
+                        applyRestrictions();
+                        JOptionPane.showMessageDialog(ResultsPanel.this, text,
+                                getFrame().getLang().getWord(Lang.RESULTS_FILE_CHOOSER), t);
+                    }
+                });
+            }
+        };
+        new Thread(r, "export-models").start();
+    }
+
     /**
      * Enable the next and previous buttons depending on the frame state.
      */
@@ -226,11 +288,11 @@ public class ResultsPanel extends AbstractComponentPanel {
                 previousModel.setEnabled(false);
                 break;
             case FIRST_RESULT :
-                nextModel.setEnabled(true);
+                nextModel.setEnabled(isNextReady());
                 previousModel.setEnabled(false);
                 break;
             case MIDDLE_RESULT :
-                nextModel.setEnabled(true);
+                nextModel.setEnabled(isNextReady());
                 previousModel.setEnabled(true);
                 break;
             case LAST_RESULT :
@@ -287,16 +349,11 @@ public class ResultsPanel extends AbstractComponentPanel {
             }
         });
 
-        literalsTable.setModel(new ResultTableModel(
-            new String [] {
-                "Name", "Value"
-            },0
-        ));
-        literalsTable.setAutoCreateRowSorter(true);
+        literalsTable.setModel(new ResultTableModel());
+        ((ResultTableModel) literalsTable.getModel()).installOn(literalsTable);
         literalsTable.setDefaultRenderer(Object.class, new ResultTableCellRenderer());
         literalsTable.setGridColor(Color.BLACK);
         literalsTable.setShowGrid(true);
-        literalsTable.getRowSorter().toggleSortOrder(0);
         literalsTable.setRowSelectionAllowed(false);
         literals.setViewportView(literalsTable);
 
@@ -408,6 +465,8 @@ public class ResultsPanel extends AbstractComponentPanel {
             default :
                 System.out.println("Undefined action set for the state : " + getState());
         }
+        // The solver is closed: the files of the Solve are not needed anymore
+        getFrame().setWorkspace(null);
         getFrame().setViewToEditor();
         this.updateUI();
     }//GEN-LAST:event_backToEditorActionPerformed
@@ -471,6 +530,12 @@ public class ResultsPanel extends AbstractComponentPanel {
         this.setActModel(iter.next());
         this.setResult();
         
+        if (iter instanceof ModelListIterator && !((ModelListIterator) iter).isNextReady()) {
+            // The solver has not given the next model yet: instead of
+            // waiting for it here, Next is enabled when it comes
+            waitForNextModel((ModelListIterator) iter);
+            return State.MIDDLE_RESULT;
+        }
         if (iter.hasNext()){
             return State.MIDDLE_RESULT;
         } else {
@@ -478,6 +543,36 @@ public class ResultsPanel extends AbstractComponentPanel {
         }
     }
 
+    /**
+     * Waits in background for the model after the current one, then
+     * enables Next (or goes to LAST_RESULT if there is none).
+     */
+    private void waitForNextModel(final ModelListIterator it) {
+        final int index = it.getPosition() + 1;
+        Runnable r = new Runnable() {
+            public void run() {
+                final boolean found = it.waitForModel(index);
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        if (iter != it)
+                            return; // another Solve meanwhile
+                        if (!found && it.getPosition() + 1 == index && getState() == State.MIDDLE_RESULT)
+                            setState(State.LAST_RESULT);
+                        applyRestrictions();
+                    }
+                });
+            }
+        };
+        new Thread(r, "wait-next-model").start();
+    }
+
+    /**
+     * @return false while the next model is being computed
+     */
+    private boolean isNextReady() {
+        return !(iter instanceof ModelListIterator) || ((ModelListIterator) iter).isNextReady();
+    }
+
     private void nextModelActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_nextModelActionPerformed
         Model m;
         switch(getState()) {
@@ -611,8 +706,9 @@ public class ResultsPanel extends AbstractComponentPanel {
         exportModel.setToolTipText(getFrame().getLang().getWord("ResultsPanel.jButtonExport.tooltip"));
         showTrueLiterals.setText(getFrame().getLang().getWord("ResultsPanel.trueText"));
         showFalseLiterals.setText(getFrame().getLang().getWord("ResultsPanel.falseText"));
-        literalsTable.getColumnModel().getColumn(0).setHeaderValue(getFrame().getLang().getWord(Lang.RESULTS_NAME));
-        literalsTable.getColumnModel().getColumn(1).setHeaderValue(getFrame().getLang().getWord(Lang.RESULTS_VALUE));
+        ResultTableModel model = (ResultTableModel) literalsTable.getModel();
+        model.setColumnNames(getFrame().getLang().getWord(Lang.RESULTS_NAME), getFrame().getLang().getWord(Lang.RESULTS_VALUE));
+        model.updateHeaders(literalsTable);
         showFalseLiterals.setText(getFrame().getLang().getWord("ResultsPanel.falseText"));
         showTrueLiterals.setText(getFrame().getLang().getWord("ResultsPanel.trueText"));
         filterLiterals.setToolTipText(getFrame().getLang().getWord("ResultsPanel.searchTextField.tooltip"));
@@ -0,0 +1,281 @@
+/*
+ *
+ * Project TouIST, 2015. Easily formalize and solve real-world sized problems
+ * using propositional logic and linear theory of reals with a nice GUI.
+ *
+ * https://github.com/touist/touist
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl-2.1.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     Alexis Comte, Abdelwahab Heba, Olivier Lezaud,
+ *     Skander Ben Slimane, Maël Valais
+ *
+ */
+
+package solution;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.sat4j.core.VecInt;
+import org.sat4j.minisat.SolverFactory;
+import org.sat4j.specs.ContradictionException;
+import org.sat4j.specs.ISolver;
+
+import translation.DimacsListener;
+import translation.LiteralsTable;
+
+/**
+ * Keeps a SAT4J solver alive between two "Solve" so that editing one
+ * constraint does not reload the whole problem.
+ *
+ * Each Solve streams the new translation into the session (the session is
+ * the DimacsListener of TranslatorSAT.translate()) and then calls update().
+ * The variables are identified by their names (from the literals table), so
+ * that a proposition keeps the same variable in the solver from one
+ * translation to the other. Each clause C is added as (C or -s) where s is a
+ * "selector" variable; the selectors of the clauses of the current
+ * translation are given as assumptions when solving. A clause that is not
+ * in the new translation anymore is retracted by adding the unit clause -s;
+ * a new clause gets a new selector. The clauses that did not change are kept
+ * (along with what the solver has learnt from them).
+ *
+ * @author Maël
+ */
+public class IncrementalSession implements DimacsListener {
+	/**
+	 * Same timeout as the one used by minisat.jar (in seconds)
+	 */
+	private static final int SOLVER_TIMEOUT = 3600;
+	/**
+	 * When there are more retracted clauses than this number and than
+	 * clauses in use, the solver is rebuilt from the clauses in use.
+	 */
+	private static final int MIN_RETRACTED_BEFORE_REBUILD = 10000;
+
+	/**
+	 * A clause expressed with the variables of the session; the literals
+	 * are sorted so that the same clause always gives the same key.
+	 */
+	private static class Clause {
+		final int[] literals;
+		final int hash;
+		Clause(int[] literals) {
+			this.literals = literals;
+			this.hash = Arrays.hashCode(literals);
+		}
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Clause && Arrays.equals(literals, ((Clause) obj).literals);
+		}
+	}
+
+	private ISolver solver;
+	private int maxVar = 0;
+	private Map<String, Integer> varOfName = new HashMap<String, Integer>();
+	private LiteralsTable literalsMap = new LiteralsTable();
+	/**
+	 * The clauses in use and their selector
+	 */
+	private Map<Clause, Integer> selectors = new HashMap<Clause, Integer>();
+	private int retracted = 0;
+	/**
+	 * The variables used by the clauses in use, sorted
+	 */
+	private int[] variablesInUse = new int[0];
+	/**
+	 * The selectors (of the blocking clauses) of the enumerations that have
+	 * been closed; they are retracted at the next update().
+	 */
+	private List<Integer> closedEnumerations = new ArrayList<Integer>();
+
+	// What is being received from the translator
+	private List<int[]> translatedClauses = new ArrayList<int[]>();
+	private Map<Integer, String> translatedNames = new HashMap<Integer, String>();
+
+	public IncrementalSession() {
+		createSolver();
+	}
+
+	private void createSolver() {
+		solver = SolverFactory.newDefault();
+		solver.setTimeout(SOLVER_TIMEOUT);
+	}
+
+	@Override
+	public synchronized void problemLine(int nbVariables, int nbClauses) {
+		translatedClauses = new ArrayList<int[]>(nbClauses);
+		translatedNames = new HashMap<Integer, String>();
+	}
+
+	@Override
+	public synchronized void clause(int[] literals) {
+		translatedClauses.add(literals);
+	}
+
+	@Override
+	public synchronized void literal(int literalCode, String literalName) {
+		translatedNames.put(literalCode, literalName);
+	}
+
+	/**
+	 * Replaces the clauses of the previous translation by the ones that
+	 * have just been received from the translator, and gives the solver
+	 * that will enumerate the models of the new problem.
+	 * @return the solver; launch() has nothing to do.
+	 */
+	public synchronized SolverIncremental update() {
+		// 1. The new clauses using the variables of the session
+		Map<Clause, Integer> newSelectors = new HashMap<Clause, Integer>();
+		List<Clause> added = new ArrayList<Clause>();
+		boolean[] used = new boolean[maxVar + translatedNames.size() + 1];
+		for (int[] translated : translatedClauses) {
+			int[] literals = new int[translated.length];
+			for (int i = 0; i < translated.length; i++) {
+				int code = Math.abs(translated[i]);
+				int var = variableOf(translatedNames.containsKey(code)
+						? translatedNames.get(code) : "#" + code);
+				if (var >= used.length)
+					used = Arrays.copyOf(used, Math.max(var + 1, used.length * 2));
+				used[var] = true;
+				literals[i] = translated[i] > 0 ? var : -var;
+			}
+			Arrays.sort(literals);
+			Clause clause = new Clause(literals);
+			if (newSelectors.containsKey(clause))
+				continue;
+			Integer selector = selectors.remove(clause);
+			if (selector == null)
+				added.add(clause);
+			newSelectors.put(clause, selector);
+		}
+		// 2. Retract the clauses that have disappeared and the blocking
+		// clauses of the previous enumerations
+		List<Integer> toRetract = new ArrayList<Integer>(selectors.values());
+		toRetract.addAll(closedEnumerations);
+		closedEnumerations.clear();
+		int removedCount = selectors.size();
+		retracted += toRetract.size();
+		selectors = newSelectors;
+		if (retracted > MIN_RETRACTED_BEFORE_REBUILD && retracted > selectors.size()) {
+			rebuild();
+		} else {
+			solver.newVar(maxVar + added.size());
+			for (Integer selector : toRetract)
+				addClause(new int[] { -selector });
+		}
+		// 3. Add the new clauses with a new selector
+		for (Clause clause : added) {
+			int selector = ++maxVar;
+			solver.newVar(maxVar);
+			selectors.put(clause, selector);
+			addClause(clause, selector);
+		}
+		int count = 0;
+		variablesInUse = new int[used.length];
+		for (int var = 1; var < used.length; var++)
+			if (used[var])
+				variablesInUse[count++] = var;
+		variablesInUse = Arrays.copyOf(variablesInUse, count);
+		translatedClauses = new ArrayList<int[]>();
+		System.out.println("update(): incremental session: " + added.size() + " clauses added, "
+				+ removedCount + " removed, " + (selectors.size() - added.size()) + " kept");
+		return new SolverIncremental(this);
+	}
+
+	/**
+	 * Forgets everything the solver has learnt and loads the clauses in use
+	 * into a new solver (the variables are kept).
+	 */
+	private void rebuild() {
+		createSolver();
+		retracted = 0;
+		solver.newVar(maxVar);
+		for (Map.Entry<Clause, Integer> entry : selectors.entrySet())
+			if (entry.getValue() != null)
+				addClause(entry.getKey(), entry.getValue());
+	}
+
+	private void addClause(Clause clause, int selector) {
+		int[] withSelector = Arrays.copyOf(clause.literals, clause.literals.length + 1);
+		withSelector[clause.literals.length] = -selector;
+		addClause(withSelector);
+	}
+
+	private void addClause(int[] literals) {
+		try {
+			solver.addClause(new VecInt(literals));
+		} catch (ContradictionException e) {
+			// Cannot happen: every clause contains a selector that has not
+			// been assigned yet
+			System.err.println("addClause(): unexpected contradiction: " + e.getMessage());
+		}
+	}
+
+	private int variableOf(String name) {
+		Integer var = varOfName.get(name);
+		if (var == null) {
+			var = ++maxVar;
+			varOfName.put(name, var);
+			literalsMap.set(var, name);
+		}
+		return var;
+	}
+
+	/**
+	 * Creates a new variable that is used by an enumeration for
+	 * guarding its blocking clauses.
+	 */
+	synchronized int newGuard() {
+		int guard = ++maxVar;
+		solver.newVar(maxVar);
+		return guard;
+	}
+
+	/**
+	 * The blocking clauses guarded by this variable will be retracted at
+	 * the next update().
+	 */
+	synchronized void closeEnumeration(int guard) {
+		closedEnumerations.add(guard);
+	}
+
+	/**
+	 * @return the selectors of the clauses in use, i.e., the assumptions
+	 */
+	synchronized int[] getSelectors() {
+		int[] assumptions = new int[selectors.size()];
+		int i = 0;
+		for (Integer selector : selectors.values())
+			assumptions[i++] = selector;
+		return assumptions;
+	}
+
+	ISolver getSolver() {
+		return solver;
+	}
+
+	int[] getVariablesInUse() {
+		return variablesInUse;
+	}
+
+	LiteralsTable getLiteralsMap() {
+		return literalsMap;
+	}
+}
@@ -0,0 +1,481 @@
+/*
+ *
+ * Project TouIST, 2015. Easily formalize and solve real-world sized problems
+ * using propositional logic and linear theory of reals with a nice GUI.
+ *
+ * https://github.com/touist/touist
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl-2.1.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     Alexis Comte, Abdelwahab Heba, Olivier Lezaud,
+ *     Skander Ben Slimane, Maël Valais
+ *
+ */
+
+package solution;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+
+import translation.DimacsListener;
+
+/**
+ * Counts the models of a CNF without enumerating them (exact #SAT).
+ *
+ * The models are counted on the variables that are shown to the user, i.e.,
+ * the ones whose name does not begin with '&' (the '&' variables are added
+ * by the translator and are existentially quantified): two models that only
+ * differ on '&' variables count as one, which is what ResultsPanel shows.
+ *
+ * The algorithm is a DPLL with unit propagation where the formula is split
+ * into connected components (clauses sharing no variable) that are counted
+ * separately and multiplied; the count of each component is cached so that
+ * a component met again in another branch is not counted twice. The
+ * branching is done on the counted variables first; a component that only
+ * contains '&' variables is only checked for satisfiability.
+ *
+ * Usage: give the instance to TranslatorSAT.translate(path, listener) or use
+ * ModelCounter(dimacsFilePath, literalsMap), then call count().
+ *
+ * @author Maël
+ */
+public class ModelCounter implements DimacsListener {
+	/**
+	 * The recursion depth can be as big as the number of variables
+	 */
+	private static final long STACK_SIZE = 512L * 1024 * 1024;
+
+	/**
+	 * A component used as a key in the cache: its clauses (each clause is
+	 * sorted) sorted and put one after the other with 0 as separator.
+	 */
+	private static class Component {
+		final int[] content;
+		final int hash;
+		Component(List<int[]> clauses) {
+			int size = 0;
+			for (int[] clause : clauses)
+				size += clause.length + 1;
+			content = new int[size];
+			int i = 0;
+			for (int[] clause : clauses) {
+				System.arraycopy(clause, 0, content, i, clause.length);
+				i += clause.length + 1;
+			}
+			hash = Arrays.hashCode(content);
+		}
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Component && Arrays.equals(content, ((Component) obj).content);
+		}
+	}
+
+	private static final Comparator<int[]> CLAUSE_ORDER = new Comparator<int[]>() {
+		@Override
+		public int compare(int[] a, int[] b) {
+			for (int i = 0; i < a.length && i < b.length; i++)
+				if (a[i] != b[i])
+					return a[i] < b[i] ? -1 : 1;
+			return a.length - b.length;
+		}
+	};
+
+	private List<int[]> clauses = new ArrayList<int[]>();
+	private boolean emptyClause = false;
+	private int nbVariables = 0;
+	private Map<Integer, String> literalsMap = new HashMap<Integer, String>();
+
+	private final int maxCacheSize = Integer.getInteger("touist.counterCacheSize", 500000);
+	private Map<Component, BigInteger> cache;
+	private volatile boolean stopped = false;
+
+	// Work arrays indexed by variable, see count()
+	private boolean[] projected;
+	private int[] value;
+	private int[] mark;
+	private int stamp = 0;
+	private int[] occurrences;
+	private int[] parent;
+
+	/**
+	 * The clauses and the literals table will be given through the
+	 * DimacsListener methods (see TranslatorSAT.translate(path, listener)).
+	 */
+	public ModelCounter() {
+	}
+
+	/**
+	 * @param dimacsFilePath the DIMACS file
+	 * @param literalsMap the "literals map" ("table de correspondance")
+	 * @throws IOException if the DIMACS file cannot be read
+	 */
+	public ModelCounter(String dimacsFilePath, Map<Integer, String> literalsMap) throws IOException {
+		this.literalsMap = literalsMap;
+		BufferedReader reader = new BufferedReader(new FileReader(dimacsFilePath));
+		try {
+			String line;
+			List<Integer> clause = new ArrayList<Integer>();
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.isEmpty() || line.charAt(0) == 'c')
+					continue;
+				if (line.charAt(0) == 'p') {
+					String[] tokens = line.split("\\s+");
+					nbVariables = Integer.parseInt(tokens[2]);
+					continue;
+				}
+				for (String token : line.split("\\s+")) {
+					int literal = Integer.parseInt(token);
+					if (literal != 0) {
+						clause.add(literal);
+						continue;
+					}
+					int[] literals = new int[clause.size()];
+					for (int i = 0; i < literals.length; i++)
+						literals[i] = clause.get(i);
+					clause(literals);
+					clause.clear();
+				}
+			}
+		} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+			throw new IOException("ModelCounter(): incorrect DIMACS content: " + e.getMessage());
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Override
+	public void problemLine(int nbVariables, int nbClauses) {
+		this.nbVariables = nbVariables;
+	}
+
+	/**
+	 * The literals of the clause are sorted; duplicate literals are removed
+	 * and the tautologies (x or -x) are ignored.
+	 */
+	@Override
+	public void clause(int[] literals) {
+		int[] sorted = literals.clone();
+		Arrays.sort(sorted);
+		int size = 0;
+		for (int literal : sorted) {
+			if (size > 0 && sorted[size - 1] == literal)
+				continue;
+			sorted[size++] = literal;
+			nbVariables = Math.max(nbVariables, Math.abs(literal));
+		}
+		sorted = Arrays.copyOf(sorted, size);
+		for (int literal : sorted)
+			if (literal > 0 && Arrays.binarySearch(sorted, -literal) >= 0)
+				return;
+		if (sorted.length == 0)
+			emptyClause = true;
+		clauses.add(sorted);
+	}
+
+	@Override
+	public void literal(int literalCode, String literalName) {
+		literalsMap.put(literalCode, literalName);
+	}
+
+	/**
+	 * Stops count() as soon as possible (e.g., from another thread).
+	 */
+	public void stop() {
+		stopped = true;
+	}
+
+	/**
+	 * Counts the models. The counting is done in a new thread with a big
+	 * stack because the recursion can go as deep as the number of variables.
+	 * @return the number of models (on the variables not beginning with '&'),
+	 * or null if stop() has been called
+	 * @throws InterruptedException
+	 */
+	public BigInteger count() throws InterruptedException {
+		final BigInteger[] result = new BigInteger[1];
+		final RuntimeException[] error = new RuntimeException[1];
+		Thread t = new Thread(null, new Runnable() {
+			@Override
+			public void run() {
+				try {
+					result[0] = countAll();
+				} catch (CancellationException e) {
+					result[0] = null;
+				} catch (RuntimeException e) {
+					error[0] = e;
+				}
+			}
+		}, "model-counter", STACK_SIZE);
+		long start = System.currentTimeMillis();
+		t.start();
+		try {
+			t.join();
+		} catch (InterruptedException e) {
+			stop();
+			throw e;
+		}
+		if (error[0] != null)
+			throw error[0];
+		System.out.println("count(): " + result[0] + " models counted in "
+				+ (System.currentTimeMillis() - start) + "ms (" + cache.size() + " components cached)");
+		return result[0];
+	}
+
+	private BigInteger countAll() {
+		projected = new boolean[nbVariables + 1];
+		value = new int[nbVariables + 1];
+		mark = new int[nbVariables + 1];
+		occurrences = new int[nbVariables + 1];
+		parent = new int[nbVariables + 1];
+		cache = new HashMap<Component, BigInteger>();
+		int nbProjected = 0;
+		for (int var = 1; var <= nbVariables; var++) {
+			String name = literalsMap.get(var);
+			projected[var] = name == null || name.charAt(0) != '&';
+			if (projected[var])
+				nbProjected++;
+		}
+		if (emptyClause)
+			return BigInteger.ZERO;
+		// The counted variables that appear in no clause can take any value
+		return count(clauses).shiftLeft(nbProjected - projectedVariables(clauses));
+	}
+
+	/**
+	 * @return the number of assignments of the counted variables of f that
+	 * can be extended to a model of f
+	 */
+	private BigInteger count(List<int[]> f) {
+		if (stopped)
+			throw new CancellationException();
+		if (f.isEmpty())
+			return BigInteger.ONE;
+		int before = projectedVariables(f);
+		int assigned = 0;
+		List<int[]> g = f;
+		// Unit propagation
+		while (true) {
+			List<Integer> units = new ArrayList<Integer>();
+			for (int[] clause : g) {
+				if (clause.length != 1)
+					continue;
+				int var = Math.abs(clause[0]);
+				int sign = clause[0] > 0 ? 1 : -1;
+				if (value[var] == -sign) { // x and -x are both units
+					resetValues(units);
+					return BigInteger.ZERO;
+				}
+				if (value[var] == 0) {
+					value[var] = sign;
+					units.add(clause[0]);
+					if (projected[var])
+						assigned++;
+				}
+			}
+			if (units.isEmpty())
+				break;
+			g = simplify(g);
+			resetValues(units);
+			if (g == null)
+				return BigInteger.ZERO;
+		}
+		BigInteger result = BigInteger.ONE.shiftLeft(before - assigned - projectedVariables(g));
+		if (g.isEmpty())
+			return result;
+		for (List<int[]> component : components(g)) {
+			BigInteger count = countComponent(component);
+			if (count.signum() == 0)
+				return BigInteger.ZERO;
+			result = result.multiply(count);
+		}
+		return result;
+	}
+
+	/**
+	 * Same as count() for a connected set of clauses without unit clauses.
+	 */
+	private BigInteger countComponent(List<int[]> component) {
+		Collections.sort(component, CLAUSE_ORDER);
+		Component key = new Component(component);
+		BigInteger result = cache.get(key);
+		if (result != null)
+			return result;
+		int var = chooseVariable(component, true);
+		if (var == 0) {
+			// No counted variable: is it satisfiable?
+			var = chooseVariable(component, false);
+			result = BigInteger.ZERO;
+			for (int literal : new int[] { var, -var }) {
+				List<int[]> g = assign(component, literal);
+				if (g != null && count(g).signum() > 0) {
+					result = BigInteger.ONE;
+					break;
+				}
+			}
+		} else {
+			int nbProjected = projectedVariables(component);
+			result = BigInteger.ZERO;
+			for (int literal : new int[] { var, -var }) {
+				List<int[]> g = assign(component, literal);
+				if (g != null)
+					result = result.add(count(g).shiftLeft(nbProjected - 1 - projectedVariables(g)));
+			}
+		}
+		if (cache.size() >= maxCacheSize)
+			cache.clear();
+		cache.put(key, result);
+		return result;
+	}
+
+	private List<int[]> assign(List<int[]> f, int literal) {
+		int var = Math.abs(literal);
+		value[var] = literal > 0 ? 1 : -1;
+		List<int[]> g = simplify(f);
+		value[var] = 0;
+		return g;
+	}
+
+	/**
+	 * Removes the satisfied clauses and the false literals according to
+	 * value[].
+	 * @return the new clauses or null if a clause has become empty
+	 */
+	private List<int[]> simplify(List<int[]> f) {
+		List<int[]> g = new ArrayList<int[]>(f.size());
+		for (int[] clause : f) {
+			boolean satisfied = false;
+			int falseLiterals = 0;
+			for (int literal : clause) {
+				int v = value[Math.abs(literal)];
+				if (v == 0)
+					continue;
+				if ((v > 0) == (literal > 0)) {
+					satisfied = true;
+					break;
+				}
+				falseLiterals++;
+			}
+			if (satisfied)
+				continue;
+			if (falseLiterals == clause.length)
+				return null;
+			if (falseLiterals == 0) {
+				g.add(clause);
+				continue;
+			}
+			int[] reduced = new int[clause.length - falseLiterals];
+			int i = 0;
+			for (int literal : clause)
+				if (value[Math.abs(literal)] == 0)
+					reduced[i++] = literal;
+			g.add(reduced);
+		}
+		return g;
+	}
+
+	private void resetValues(List<Integer> literals) {
+		for (int literal : literals)
+			value[Math.abs(literal)] = 0;
+	}
+
+	/**
+	 * @return the number of distinct counted variables in f
+	 */
+	private int projectedVariables(List<int[]> f) {
+		stamp++;
+		int count = 0;
+		for (int[] clause : f)
+			for (int literal : clause) {
+				int var = Math.abs(literal);
+				if (mark[var] != stamp) {
+					mark[var] = stamp;
+					if (projected[var])
+						count++;
+				}
+			}
+		return count;
+	}
+
+	/**
+	 * @param onlyProjected only choose among the counted variables
+	 * @return the variable with the most occurrences, 0 if there is none
+	 */
+	private int chooseVariable(List<int[]> f, boolean onlyProjected) {
+		int best = 0;
+		int bestOccurrences = 0;
+		for (int[] clause : f)
+			for (int literal : clause)
+				occurrences[Math.abs(literal)]++;
+		for (int[] clause : f)
+			for (int literal : clause) {
+				int var = Math.abs(literal);
+				if (occurrences[var] > bestOccurrences && (projected[var] || !onlyProjected)) {
+					best = var;
+					bestOccurrences = occurrences[var];
+				}
+			}
+		for (int[] clause : f)
+			for (int literal : clause)
+				occurrences[Math.abs(literal)] = 0;
+		return best;
+	}
+
+	/**
+	 * Splits f into sets of clauses that share no variable (union-find).
+	 */
+	private List<List<int[]>> components(List<int[]> f) {
+		for (int[] clause : f)
+			for (int literal : clause)
+				parent[Math.abs(literal)] = Math.abs(literal);
+		for (int[] clause : f)
+			for (int i = 1; i < clause.length; i++) {
+				int a = find(Math.abs(clause[0]));
+				int b = find(Math.abs(clause[i]));
+				if (a != b)
+					parent[a] = b;
+			}
+		Map<Integer, List<int[]>> byRoot = new HashMap<Integer, List<int[]>>();
+		for (int[] clause : f) {
+			int root = find(Math.abs(clause[0]));
+			List<int[]> component = byRoot.get(root);
+			if (component == null) {
+				component = new ArrayList<int[]>();
+				byRoot.put(root, component);
+			}
+			component.add(clause);
+		}
+		return new ArrayList<List<int[]>>(byRoot.values());
+	}
+
+	private int find(int var) {
+		while (parent[var] != var) {
+			parent[var] = parent[parent[var]];
+			var = parent[var];
+		}
+		return var;
+	}
+}
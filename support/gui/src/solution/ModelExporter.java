@@ -0,0 +1,290 @@
+/*
+ *
+ * Project TouIST, 2015. Easily formalize and solve real-world sized problems
+ * using propositional logic and linear theory of reals with a nice GUI.
+ *
+ * https://github.com/touist/touist
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl-2.1.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     Alexis Comte, Abdelwahab Heba, Olivier Lezaud,
+ *     Skander Ben Slimane, Maël Valais
+ *
+ */
+
+package solution;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import entity.Model;
+import entity.SymbolTable;
+
+/**
+ * Writes models one after the other to a stream (see ModelList.exportTo()),
+ * so that millions of models can be exported without keeping them.
+ *
+ * The columns are the literals of the first model; the next models are
+ * written in the same order (the literals that the first model has not are
+ * an error). The formats are:
+ * - CSV: a header with the names, then a line of 1/0 (or of the arithmetic
+ *   values) per model;
+ * - JSONL: a JSON object {"name": true, "x": "2.5"...} per line;
+ * - BINARY: "TOUISTM1", the number of columns (int) and their names
+ *   (DataOutput.writeUTF), then (columns + 7) / 8 bytes per model, the bit
+ *   (i % 8) of the byte (i / 8) being the value of the column i (the
+ *   arithmetic values are not kept).
+ *
+ * @author Maël
+ */
+public class ModelExporter implements Closeable {
+	public enum Format {
+		CSV, JSONL, BINARY;
+
+		/**
+		 * @return the format given by the extension of the file: .csv,
+		 * .jsonl/.json, .bin; null if none
+		 */
+		public static Format fromFileName(String fileName) {
+			String name = fileName.toLowerCase();
+			if (name.endsWith(".csv"))
+				return CSV;
+			if (name.endsWith(".jsonl") || name.endsWith(".json"))
+				return JSONL;
+			if (name.endsWith(".bin"))
+				return BINARY;
+			return null;
+		}
+	}
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final byte[] MAGIC = "TOUISTM1".getBytes(UTF8);
+	private static final byte[] TRUE = "true".getBytes(UTF8);
+	private static final byte[] FALSE = "false".getBytes(UTF8);
+
+	private final Format format;
+	private final DataOutputStream out;
+	private long count = 0;
+
+	// The columns, set by the first model
+	private String[] names = null;
+	private SymbolTable symbols = null;
+	private int[] columnOfSymbol = new int[0]; // -1 if not a column
+	private Map<String, Integer> columnOfName = null;
+	private byte[][] encodedNames = null; // JSONL: the escaped names
+	private byte[] bits = null;
+	private int[] positions = null; // CSV: the literal of each column of 'positionsOf'
+	private Model positionsOf = null;
+
+	public ModelExporter(OutputStream out, Format format) {
+		this.out = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+		this.format = format;
+	}
+
+	/**
+	 * Writes the model after the previous ones.
+	 * @throws IOException if the model has a literal that the first one has
+	 * not
+	 */
+	public void write(Model model) throws IOException {
+		if (names == null)
+			writeHeader(model);
+		switch (format) {
+			case CSV :
+				if (model.size() > names.length)
+					throw new IOException("write(): the model has literals that are not in the first model exported");
+				for (int i = 0; i < names.length; i++) {
+					if (i > 0)
+						out.write(',');
+					int at = at(model, i);
+					if (at == -1)
+						continue;
+					String value = model.getValue(at);
+					if (value != null)
+						out.write(csv(value));
+					else
+						out.write(model.isTrue(at) ? '1' : '0');
+				}
+				out.write('\n');
+				break;
+			case JSONL :
+				out.write('{');
+				for (int i = 0; i < model.size(); i++) {
+					if (i > 0)
+						out.write(',');
+					out.write(encodedNames[column(model, i)]);
+					out.write(':');
+					String value = model.getValue(i);
+					if (value != null)
+						out.write(json(value));
+					else
+						out.write(model.isTrue(i) ? TRUE : FALSE);
+				}
+				out.write('}');
+				out.write('\n');
+				break;
+			case BINARY :
+				Arrays.fill(bits, (byte) 0);
+				for (int i = 0; i < model.size(); i++)
+					if (model.isTrue(i)) {
+						int column = column(model, i);
+						bits[column >>> 3] |= 1 << (column & 7);
+					}
+				out.write(bits);
+				break;
+		}
+		count++;
+	}
+
+	/**
+	 * @return the number of models written
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Flushes and closes the stream.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (names == null && format == Format.BINARY) {
+			// No model: still a valid file, with no column
+			out.write(MAGIC);
+			out.writeInt(0);
+		}
+		out.close();
+	}
+
+	private void writeHeader(Model model) throws IOException {
+		names = new String[model.size()];
+		symbols = model.getSymbols();
+		columnOfName = new HashMap<String, Integer>(names.length * 2);
+		for (int i = 0; i < names.length; i++) {
+			names[i] = model.getName(i);
+			columnOfName.put(names[i], i);
+			int symbol = model.getSymbol(i);
+			if (symbol >= columnOfSymbol.length) {
+				int length = columnOfSymbol.length;
+				columnOfSymbol = Arrays.copyOf(columnOfSymbol, Math.max(symbol + 1, length * 2));
+				Arrays.fill(columnOfSymbol, length, columnOfSymbol.length, -1);
+			}
+			columnOfSymbol[symbol] = i;
+		}
+		encodedNames = new byte[names.length][];
+		switch (format) {
+			case CSV :
+				for (int i = 0; i < names.length; i++) {
+					if (i > 0)
+						out.write(',');
+					out.write(csv(names[i]));
+				}
+				out.write('\n');
+				break;
+			case JSONL :
+				for (int i = 0; i < names.length; i++)
+					encodedNames[i] = json(names[i]);
+				break;
+			case BINARY :
+				out.write(MAGIC);
+				out.writeInt(names.length);
+				for (String name : names)
+					out.writeUTF(name);
+				bits = new byte[(names.length + 7) / 8];
+				break;
+		}
+	}
+
+	/**
+	 * @return the column of the literal i of the model
+	 */
+	private int column(Model model, int i) throws IOException {
+		int column = -1;
+		if (model.getSymbols() == symbols) {
+			int symbol = model.getSymbol(i);
+			if (symbol < columnOfSymbol.length)
+				column = columnOfSymbol[symbol];
+		} else {
+			Integer c = columnOfName.get(model.getName(i));
+			if (c != null)
+				column = c;
+		}
+		if (column == -1)
+			throw new IOException("write(): the literal '" + model.getName(i)
+					+ "' is not in the first model exported");
+		return column;
+	}
+
+	/**
+	 * @return the literal of the model that is in the column, or -1 if none
+	 */
+	private int at(Model model, int column) throws IOException {
+		// Usually the models have the same literals in the same order
+		if (column < model.size() && model.getSymbols() == symbols
+				&& model.getSymbol(column) < columnOfSymbol.length
+				&& columnOfSymbol[model.getSymbol(column)] == column)
+			return column;
+		if (positions == null || positionsOf != model) {
+			positions = new int[names.length];
+			Arrays.fill(positions, -1);
+			for (int i = 0; i < model.size(); i++)
+				positions[column(model, i)] = i;
+			positionsOf = model;
+		}
+		return positions[column];
+	}
+
+	private static byte[] csv(String s) {
+		if (s.indexOf(',') == -1 && s.indexOf('"') == -1 && s.indexOf('\n') == -1 && s.indexOf('\r') == -1)
+			return s.getBytes(UTF8);
+		return ("\"" + s.replace("\"", "\"\"") + "\"").getBytes(UTF8);
+	}
+
+	private static byte[] json(String s) {
+		StringBuilder sb = new StringBuilder(s.length() + 2);
+		sb.append('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			switch (c) {
+				case '"' :
+					sb.append("\\\"");
+					break;
+				case '\\' :
+					sb.append("\\\\");
+					break;
+				case '\n' :
+					sb.append("\\n");
+					break;
+				case '\r' :
+					sb.append("\\r");
+					break;
+				case '\t' :
+					sb.append("\\t");
+					break;
+				default :
+					if (c < 0x20)
+						sb.append(String.format("\\u%04x", (int) c));
+					else
+						sb.append(c);
+			}
+		}
+		sb.append('"');
+		return sb.toString().getBytes(UTF8);
+	}
+}
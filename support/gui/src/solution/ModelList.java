@@ -23,7 +23,9 @@
 
 package solution;
 
-import java.util.ArrayList;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.util.List;
 import java.util.ListIterator;
 
@@ -35,10 +37,22 @@ import entity.Model;
  * ModelsIterator.hasNext(), the Solver.nextModel() will be called and the next
  * model will be automatically retrieved.
  */
-public class ModelList implements Iterable<Model> {
-	private List<Model> models = new ArrayList<Model>();
+public class ModelList implements Iterable<Model>, Closeable {
+	// The old models are kept on disk (see ModelStore)
+	private ModelStore models = new ModelStore();
 	private Solver solverInterface; // The solver that created this inst. of
 									// Models
+	/**
+	 * Maximum number of models asked to the solver at once (see
+	 * Solver.nextModels()); can be set with -Dtouist.modelBatchSize=N
+	 */
+	private int batchSize = Integer.getInteger("touist.modelBatchSize", 32);
+	/**
+	 * Number of models computed in advance while the user looks at the
+	 * current one; can be set with -Dtouist.prefetchModels=N (0: none)
+	 */
+	private int prefetch = Integer.getInteger("touist.prefetchModels", 64);
+	private ModelProducer producer = null;
 
 	/**
 	 * Create an instance of Models; you need to pass the Solver instance that
@@ -60,14 +74,116 @@ public class ModelList implements Iterable<Model> {
 	 */
 	@Override
 	public ListIterator<Model> iterator() {
-		return new ModelListIterator(models, solverInterface);
+		return new ModelListIterator(models, getProducer());
+	}
+
+	private synchronized ModelProducer getProducer() {
+		if (producer == null)
+			producer = new ModelProducer(models, solverInterface, batchSize, prefetch);
+		return producer;
+	}
+
+	/**
+	 * @return the error of the solver if it has stopped giving models because
+	 * of it (the iterators have no next model then), else null
+	 */
+	public SolverExecutionException getError() {
+		return getProducer().getError();
+	}
+
+	/**
+	 * @return true if the solver has given all its models: the iterators
+	 * have no model after the last one of the list (they may have been
+	 * exported only, see exportTo())
+	 */
+	public boolean isComplete() {
+		return getProducer().isFinished();
 	}
 
 	/**
-	 * Exports the models already computed.
+	 * @param batchSize the maximum number of models that the iterators will
+	 * ask at once to the solver when they need a new model.
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * @param prefetch the number of models that are computed in advance by
+	 * a thread (0: the models are computed when the iterators need them);
+	 * to be set before iterator() is called.
+	 */
+	public void setPrefetch(int prefetch) {
+		this.prefetch = prefetch;
+	}
+
+	/**
+	 * Deletes the models kept on disk; the models that were not kept in
+	 * memory cannot be read anymore.
+	 */
+	@Override
+	public void close() {
+		if (producer != null)
+			producer.close();
+		models.close();
+	}
+
+	/**
+	 * Exports all the models (see exportTo(String, Format, long)); the format
+	 * is given by the extension of the file (.csv, .jsonl or .bin).
 	 * @param fileName
 	 */
-	public void exportTo(String fileName) {
-		// TODO increment #2
+	public void exportTo(String fileName) throws IOException, SolverExecutionException {
+		ModelExporter.Format format = ModelExporter.Format.fromFileName(fileName);
+		if (format == null)
+			throw new IOException("exportTo(): unknown format for '" + fileName + "' (.csv, .jsonl or .bin)");
+		exportTo(fileName, format, -1);
+	}
+
+	/**
+	 * Writes the models already computed, then the next ones given by the
+	 * solver, to the file as they come: the next models are not kept, so
+	 * the iterators will not see them (the solver has already given them).
+	 * The models that have already been given are not written twice. If all
+	 * the models have been asked, isComplete() is true afterwards.
+	 * @param limit the maximum number of models to write, -1 for all
+	 * @return the number of models written
+	 * @throws SolverExecutionException if the solver has failed, before or
+	 * during the export (see getError())
+	 */
+	public long exportTo(String fileName, ModelExporter.Format format, long limit)
+			throws IOException, SolverExecutionException {
+		// The solver is used here: the models computed in advance are in the list
+		ModelProducer producer = getProducer();
+		producer.pause();
+		ModelExporter exporter = null;
+		try {
+			exporter = new ModelExporter(new FileOutputStream(fileName), format);
+			for (int i = 0; i < models.size() && (limit < 0 || exporter.getCount() < limit); i++)
+				exporter.write(models.get(i));
+			// The solver must not be asked again once it has failed or ended
+			if (producer.getError() != null)
+				throw producer.getError();
+			while (!producer.isFinished() && (limit < 0 || exporter.getCount() < limit)) {
+				int count = limit < 0 ? batchSize : (int) Math.min(batchSize, limit - exporter.getCount());
+				List<Model> nextModels = producer.nextModels(count);
+				if (nextModels == null) { // no more models, or the solver failed
+					producer.finish();
+					if (producer.getError() != null)
+						throw producer.getError();
+					break;
+				}
+				for (Model model : nextModels) {
+					if (producer.isNew(model) && (limit < 0 || exporter.getCount() < limit))
+						exporter.write(model);
+				}
+			}
+		} finally {
+			if (exporter != null)
+				exporter.close();
+			producer.resume();
+		}
+		System.out.println("exportTo(): " + exporter.getCount() + " models written to " + fileName);
+		return exporter.getCount();
 	}
 }
@@ -23,18 +23,14 @@
 
 package solution;
 
-import java.io.IOException;
 import java.util.List;
 import java.util.ListIterator;
 
 import entity.Model;
-import entity.LexicographicalTree;
-import java.util.Set;
 
 public class ModelListIterator implements ListIterator<Model> {
-	private Solver solverInterface;
 	private List<Model> models;
-        private LexicographicalTree alreadyPresent;
+	private ModelProducer producer; // adds the models given by the solver
 	private int currentPosition;
 
 	/**
@@ -43,46 +39,70 @@ public class ModelListIterator implements ListIterator<Model> {
 	 * Model-s
 	 */
 	public ModelListIterator(List<Model> models, Solver solverInterface) {
+		this(models, solverInterface, 1);
+	}
+
+	/**
+	 * @param models The collection that comes from Models
+	 * @param solverInterface The instance of Solver that produces the new
+	 * Model-s
+	 * @param batchSize the maximum number of models asked at once to the
+	 * solver when a new model is needed
+	 */
+	public ModelListIterator(List<Model> models, Solver solverInterface, int batchSize) {
+		this(models, new ModelProducer(models, solverInterface, batchSize, 0));
+	}
+
+	/**
+	 * @param producer the producer of the models of the ModelList (shared by
+	 * its iterators)
+	 */
+	ModelListIterator(List<Model> models, ModelProducer producer) {
 		super();
 		this.models = models;
-		this.solverInterface = solverInterface;
+		this.producer = producer;
 		currentPosition = -1;
-                this.alreadyPresent = new LexicographicalTree();
 	}
 
+	/**
+	 * Waits for the next model if it has not been computed yet.
+	 */
 	@Override
 	public boolean hasNext() {
-		boolean hasNext = false;
-		if (currentPosition == models.size() - 1) { // Need to get a new model?
-			Model nextModel = null;
-			try {
-				nextModel = solverInterface.nextModel();
-			} catch (IOException e) {
-				System.err.println("hasNext(): I/O exception: "+e.getMessage());
-				return false;
-			} catch (SolverExecutionException e) {
-				System.err.println("hasNext(): "+e.getMessage());
-			}
-			
-			// Added for filtering '&45' literals
-			if(nextModel != null && alreadyPresent.contains(nextModel)) {
-				return hasNext();
-			}
-
-			if (nextModel == null) { // No models left
-				solverInterface.close();
-				hasNext = false;
-				System.out.println("hasNext(): there is no more models");
-			} else {
-				hasNext = true;
-				models.add(nextModel);
-                                alreadyPresent.add(nextModel);
-			}
-		} else { // Models have already been retrieved (e.g. because of
-					// previous())
-			hasNext = true;
-		}
-		return hasNext;
+		// Models may have already been retrieved (e.g. because of previous()
+		// or by the producer in advance)
+		return producer.await(currentPosition + 1);
+	}
+
+	/**
+	 * @return true if hasNext() would not wait for the solver
+	 */
+	public boolean isNextReady() {
+		return producer.isReady(currentPosition + 1);
+	}
+
+	/**
+	 * Waits until the model at 'index' has been computed; unlike hasNext(),
+	 * it can be called by another thread than the one using the iterator.
+	 * @return true if there is a model at 'index'
+	 */
+	public boolean waitForModel(int index) {
+		return producer.await(index);
+	}
+
+	/**
+	 * @return the error of the solver if it has stopped giving models because
+	 * of it (hasNext() returns false then), else null
+	 */
+	public SolverExecutionException getError() {
+		return producer.getError();
+	}
+
+	/**
+	 * @return the index of the model given by the last next() or previous()
+	 */
+	public int getPosition() {
+		return currentPosition;
 	}
 
 	@Override
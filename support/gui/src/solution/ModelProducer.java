@@ -0,0 +1,285 @@
+/*
+ *
+ * Project TouIST, 2015. Easily formalize and solve real-world sized problems
+ * using propositional logic and linear theory of reals with a nice GUI.
+ *
+ * https://github.com/touist/touist
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl-2.1.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     Alexis Comte, Abdelwahab Heba, Olivier Lezaud,
+ *     Skander Ben Slimane, Maël Valais
+ *
+ */
+
+package solution;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import entity.Model;
+import entity.ModelSet;
+import touist.Metrics;
+
+/**
+ * Asks the solver for the models of a ModelList and adds the new ones to
+ * the list (the same model is only added once, see ModelSet).
+ *
+ * With a window of K > 0 models, a thread keeps up to K models ahead of the
+ * furthest position reached by the iterators: while the user looks at a
+ * model, the next ones are computed, and it waits when the window is full.
+ * With a window of 0, the models are asked on the thread of the iterator
+ * when it needs them.
+ *
+ * @author Maël
+ */
+class ModelProducer implements Runnable {
+	private final List<Model> models;
+	private final Solver solver;
+	private final int batchSize;
+	private final int window;
+	private final ModelSet alreadyPresent;
+
+	private int position = -1; // the furthest position of the iterators
+	private boolean finished = false; // no more models
+	private boolean paused = false;
+	private Thread thread = null;
+	private SolverExecutionException error = null; // ended the models
+
+	/**
+	 * @param batchSize the maximum number of models asked at once
+	 * @param window the number of models computed in advance (0: none)
+	 */
+	ModelProducer(List<Model> models, Solver solver, int batchSize, int window) {
+		this.models = models;
+		this.solver = solver;
+		this.batchSize = Math.max(1, batchSize);
+		this.window = window;
+		this.alreadyPresent = new ModelSet(models);
+	}
+
+	/**
+	 * Waits until the model at 'index' is in the list or until there is no
+	 * more model.
+	 * @return true if the model at 'index' is in the list
+	 */
+	synchronized boolean await(int index) {
+		if (index - 1 > position) {
+			position = index - 1;
+			notifyAll();
+		}
+		while (models.size() <= index && !finished) {
+			if (window == 0 && !paused) {
+				fetch(batchSize); // on this thread
+				continue;
+			}
+			start();
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return models.size() > index;
+			}
+		}
+		return models.size() > index;
+	}
+
+	/**
+	 * @return true if await(index) would not wait
+	 */
+	synchronized boolean isReady(int index) {
+		return models.size() > index || finished;
+	}
+
+	/**
+	 * @return the error of the solver that ended the models, or null if the
+	 * models have not ended or if the solver has given them all
+	 */
+	synchronized SolverExecutionException getError() {
+		return error;
+	}
+
+	/**
+	 * For the models given by the solver that are exported but not added to
+	 * the list (see ModelList.exportTo()).
+	 * @return true if the model has not been given yet
+	 */
+	synchronized boolean isNew(Model model) {
+		return alreadyPresent.addUnlisted(model);
+	}
+
+	/**
+	 * Tells that the solver has no more models (e.g. the export has asked
+	 * for all of them).
+	 */
+	synchronized void finish() {
+		finished = true;
+		notifyAll();
+	}
+
+	/**
+	 * @return true if the solver has no more models
+	 */
+	synchronized boolean isFinished() {
+		return finished;
+	}
+
+	/**
+	 * Stops the thread (and waits for it) so that the caller can use the
+	 * solver; await() waits until resume() is called.
+	 */
+	void pause() {
+		Thread t;
+		synchronized (this) {
+			paused = true;
+			notifyAll();
+			t = thread;
+		}
+		if (t != null && t != Thread.currentThread()) {
+			try {
+				t.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	synchronized void resume() {
+		paused = false;
+		notifyAll(); // the iterators waiting start a new thread
+	}
+
+	/**
+	 * Stops the thread for good.
+	 */
+	void close() {
+		pause();
+		synchronized (this) {
+			finished = true;
+			paused = false;
+			notifyAll();
+		}
+	}
+
+	private void start() {
+		if (thread == null && !paused) {
+			thread = new Thread(this, "prefetch-models");
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	@Override
+	public void run() {
+		while (true) {
+			synchronized (this) {
+				while (!paused && !finished && models.size() - 1 - position >= window) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						break;
+					}
+				}
+				if (paused || finished || Thread.currentThread().isInterrupted()
+						|| models.size() - 1 - position >= window) {
+					if (thread == Thread.currentThread())
+						thread = null;
+					notifyAll();
+					return;
+				}
+			}
+			// The solver is called out of the lock: the iterators can read the
+			// models already there meanwhile
+			List<Model> nextModels = nextModels();
+			synchronized (this) {
+				add(nextModels);
+			}
+		}
+	}
+
+	/**
+	 * Asks the solver for up to 'count' models and adds them (called with
+	 * the lock held, when there is no thread).
+	 */
+	private void fetch(int count) {
+		add(nextModels(count));
+	}
+
+	private List<Model> nextModels() {
+		int count;
+		synchronized (this) {
+			count = Math.min(batchSize, window - (models.size() - 1 - position));
+		}
+		return nextModels(Math.max(1, count));
+	}
+
+	/**
+	 * Asks the solver for up to 'count' models and records their latency;
+	 * also used by ModelList.exportTo() while the thread is paused. When the
+	 * solver fails, the error is kept (see getError()).
+	 * @return the models given by the solver; null if there is no more model
+	 */
+	List<Model> nextModels(int count) {
+		List<Model> nextModels = new ArrayList<Model>();
+		long start = System.nanoTime();
+		try {
+			nextModels = solver.nextModels(count);
+		} catch (IOException e) {
+			System.err.println("nextModels(): I/O exception: " + e.getMessage());
+			setError(new SolverExecutionException(e.getMessage()));
+			solver.close();
+			return null;
+		} catch (SolverExecutionException e) {
+			System.err.println("nextModels(): " + e.getMessage());
+			setError(e);
+			solver.close();
+			return null;
+		} catch (RuntimeException e) {
+			// e.g. the solver has been closed meanwhile
+			System.err.println("nextModels(): " + e);
+			setError(new SolverExecutionException(e.toString()));
+			return null;
+		}
+		if (nextModels.isEmpty()) { // No models left
+			solver.close();
+			System.out.println("nextModels(): there is no more models");
+			return null;
+		}
+		// The latency of each model of the batch
+		double millis = (System.nanoTime() - start) / 1e6 / nextModels.size();
+		for (int i = 0; i < nextModels.size(); i++)
+			Metrics.timer(Metrics.MODEL).record(millis);
+		Metrics.counter(Metrics.MODELS).add(nextModels.size());
+		return nextModels;
+	}
+
+	private synchronized void setError(SolverExecutionException e) {
+		if (error == null)
+			error = e;
+	}
+
+	private void add(List<Model> nextModels) {
+		if (nextModels == null)
+			finished = true;
+		else {
+			for (Model nextModel : nextModels) {
+				// Added for filtering '&45' literals. The solvers now block
+				// each model on the shown variables only, so this should not
+				// filter anything anymore; it is kept in case a solver doesn't.
+				if (alreadyPresent.add(nextModel, models.size()))
+					models.add(nextModel);
+			}
+		}
+		notifyAll();
+	}
+}
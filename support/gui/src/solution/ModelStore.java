@@ -0,0 +1,412 @@
+/*
+ *
+ * Project TouIST, 2015. Easily formalize and solve real-world sized problems
+ * using propositional logic and linear theory of reals with a nice GUI.
+ *
+ * https://github.com/touist/touist
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl-2.1.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     Alexis Comte, Abdelwahab Heba, Olivier Lezaud,
+ *     Skander Ben Slimane, Maël Valais
+ *
+ */
+
+package solution;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.RandomAccess;
+
+import entity.Model;
+import entity.SymbolTable;
+import touist.Workspace;
+
+/**
+ * The list of the models given by a solver (see ModelList). The most recent
+ * models are kept in memory, up to "touist.modelStoreMemory" MB (64 by
+ * default); the older ones are written to a file and read back when they
+ * are asked for, so that enumerating millions of models does not run out of
+ * memory while previous() still works.
+ *
+ * The file is append-only: each model is a record made of its size in bytes
+ * and of its compact encoding (the numbers of its names in the SymbolTable,
+ * which stays in memory, a bit per value and its arithmetic values). A
+ * record is read with a positional read into a reused buffer (the file is
+ * not memory-mapped: a mapping is only released by the GC, and on Windows
+ * the file could not be deleted by close() until then). set() of a model
+ * that is in the file appends a new record.
+ *
+ * Models can be added at the end and replaced, not inserted or removed.
+ *
+ * @author Maël
+ */
+public class ModelStore extends AbstractList<Model> implements RandomAccess, Closeable {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final int FLAG_IDS = 1;
+	private static final int FLAG_VALUES = 2;
+	/**
+	 * The number of models read from the file that are kept
+	 */
+	private static final int CACHED = 64;
+
+	private final long memory;
+
+	// The models in memory are the models [spilled, spilled + recent.size()[
+	private final ArrayDeque<Model> recent = new ArrayDeque<Model>();
+	private long recentMemory = 0;
+	private int spilled = 0;
+	private long[] offsets = new long[1024];
+
+	private final Map<Integer, Model> cache = new LinkedHashMap<Integer, Model>(CACHED * 2, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, Model> eldest) {
+			return size() > CACHED;
+		}
+	};
+
+	private SymbolTable symbols = null; // the table of the models in the file
+	private Workspace workspace = null;
+	private RandomAccessFile file = null;
+	private FileChannel channel = null;
+	private long end = 0;
+	private byte[] record = new byte[4096]; // written by encode()
+	private ByteBuffer input = ByteBuffer.allocate(4096); // read by read()
+	private boolean closed = false;
+
+	public ModelStore() {
+		this(Long.getLong("touist.modelStoreMemory", 64) * 1024 * 1024);
+	}
+
+	/**
+	 * @param memory the memory (in bytes) that the models kept in memory
+	 * should not use
+	 */
+	public ModelStore(long memory) {
+		this.memory = memory;
+	}
+
+	@Override
+	public synchronized int size() {
+		return spilled + recent.size();
+	}
+
+	@Override
+	public synchronized Model get(int index) {
+		if (index < 0 || index >= size())
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+		if (index >= spilled)
+			return recentAt(index - spilled);
+		Model model = cache.get(index);
+		if (model == null) {
+			try {
+				model = read(offsets[index]);
+			} catch (IOException e) {
+				throw new IllegalStateException("get(): could not read the model " + index + ": " + e.getMessage(), e);
+			}
+			cache.put(index, model);
+		}
+		return model;
+	}
+
+	@Override
+	public synchronized boolean add(Model model) {
+		recent.addLast(model);
+		recentMemory += estimate(model);
+		modCount++;
+		// The oldest models go to the file, the last one always stays
+		while (recentMemory > memory && recent.size() > 1) {
+			Model oldest = recent.removeFirst();
+			recentMemory -= estimate(oldest);
+			try {
+				if (spilled == offsets.length)
+					offsets = Arrays.copyOf(offsets, offsets.length * 2);
+				offsets[spilled] = write(oldest);
+			} catch (IOException e) {
+				recent.addFirst(oldest);
+				recentMemory += estimate(oldest);
+				System.err.println("add(): could not write the models to the disk, they stay in memory: "
+						+ e.getMessage());
+				break;
+			}
+			spilled++;
+		}
+		return true;
+	}
+
+	@Override
+	public synchronized Model set(int index, Model model) {
+		Model previous = get(index);
+		if (index >= spilled) {
+			Model replaced = null;
+			int i = 0;
+			// ArrayDeque has no set(): the deque is rebuilt (the recent models
+			// are few compared to the ones in the file)
+			ArrayDeque<Model> rebuilt = new ArrayDeque<Model>(recent.size());
+			for (Model m : recent) {
+				if (i++ == index - spilled) {
+					replaced = m;
+					m = model;
+				}
+				rebuilt.addLast(m);
+			}
+			recent.clear();
+			recent.addAll(rebuilt);
+			recentMemory += estimate(model) - estimate(replaced);
+		} else {
+			try {
+				offsets[index] = write(model);
+			} catch (IOException e) {
+				throw new IllegalStateException("set(): could not write the model " + index + ": " + e.getMessage(), e);
+			}
+			cache.put(index, model);
+		}
+		return previous;
+	}
+
+	/**
+	 * @return the number of models that are in the file
+	 */
+	public synchronized int spilledCount() {
+		return spilled;
+	}
+
+	/**
+	 * Deletes the file; the models that were in it cannot be read anymore.
+	 */
+	@Override
+	public synchronized void close() {
+		if (closed)
+			return;
+		closed = true;
+		cache.clear();
+		try {
+			if (file != null)
+				file.close();
+		} catch (IOException e) {
+			System.err.println("close(): " + e.getMessage());
+		}
+		if (workspace != null)
+			workspace.close();
+	}
+
+	private Model recentAt(int i) {
+		if (i < recent.size() / 2) {
+			Iterator<Model> it = recent.iterator();
+			for (int j = 0; j < i; j++)
+				it.next();
+			return it.next();
+		}
+		Iterator<Model> it = recent.descendingIterator();
+		for (int j = recent.size() - 1; j > i; j--)
+			it.next();
+		return it.next();
+	}
+
+	/**
+	 * @return about the memory used by the model (see Model)
+	 */
+	private static long estimate(Model model) {
+		return model == null ? 0 : 96 + model.size() / 8 + (model.size() > 0
+				&& model.getSymbol(model.size() - 1) != model.size() - 1 ? 4L * model.size() : 0);
+	}
+
+	/**
+	 * Appends the record of the model to the file.
+	 * @return its offset
+	 */
+	private long write(Model model) throws IOException {
+		if (closed)
+			throw new IOException("the store is closed");
+		if (channel == null) {
+			workspace = Workspace.create("models");
+			file = new RandomAccessFile(workspace.getPath("models.bin"), "rw");
+			channel = file.getChannel();
+			symbols = model.getSymbols();
+		}
+		int length = encode(model);
+		long offset = end;
+		ByteBuffer buffer = ByteBuffer.wrap(record, 0, length);
+		for (long position = offset; buffer.hasRemaining(); )
+			position += channel.write(buffer, position);
+		end = offset + length;
+		return offset;
+	}
+
+	private Model read(long offset) throws IOException {
+		if (closed)
+			throw new IOException("the store is closed");
+		// A single read gives the length and, usually, the whole record
+		input.clear();
+		input.limit((int) Math.min(input.capacity(), end - offset));
+		readFully(input, offset);
+		int size = input.getInt(0);
+		if (4 + size > input.limit()) {
+			if (4 + size > input.capacity()) {
+				ByteBuffer bigger = ByteBuffer.allocate(4 + size);
+				input.flip();
+				bigger.put(input);
+				input = bigger;
+			}
+			input.limit(4 + size);
+			readFully(input, offset + input.position());
+		}
+		input.position(4);
+		input.limit(4 + size);
+		return decode(input);
+	}
+
+	/**
+	 * Reads the bytes of the file from offset into the buffer, from its
+	 * position to its limit.
+	 */
+	private void readFully(ByteBuffer buffer, long offset) throws IOException {
+		for (long position = offset; buffer.hasRemaining(); ) {
+			int read = channel.read(buffer, position);
+			if (read == -1)
+				throw new IOException("unexpected end of the file");
+			position += read;
+		}
+	}
+
+	/**
+	 * Encodes the model in 'record' (after the 4 bytes of the length)
+	 * @return the length of the record
+	 */
+	private int encode(Model model) {
+		int n = model.size();
+		boolean ids = false;
+		int values = 0;
+		for (int i = 0; i < n; i++) {
+			if (symbolOf(model, i) != i)
+				ids = true;
+			if (model.getValue(i) != null)
+				values++;
+		}
+		int at = 4;
+		at = putVarint(at, n);
+		at = putByte(at, (ids ? FLAG_IDS : 0) | (values > 0 ? FLAG_VALUES : 0));
+		if (ids) {
+			int previous = 0;
+			for (int i = 0; i < n; i++) {
+				int symbol = symbolOf(model, i);
+				int delta = symbol - previous;
+				at = putVarint(at, (delta << 1) ^ (delta >> 31)); // zigzag
+				previous = symbol;
+			}
+		}
+		ensure(at + (n + 7) / 8);
+		for (int i = 0; i < n; i += 8) {
+			int bits = 0;
+			for (int j = i; j < Math.min(n, i + 8); j++)
+				if (model.isTrue(j))
+					bits |= 1 << (j - i);
+			record[at++] = (byte) bits;
+		}
+		if (values > 0) {
+			at = putVarint(at, values);
+			for (int i = 0; i < n; i++) {
+				String value = model.getValue(i);
+				if (value != null) {
+					byte[] bytes = value.getBytes(UTF8);
+					at = putVarint(at, i);
+					at = putVarint(at, bytes.length);
+					ensure(at + bytes.length);
+					System.arraycopy(bytes, 0, record, at, bytes.length);
+					at += bytes.length;
+				}
+			}
+		}
+		ByteBuffer.wrap(record).putInt(0, at - 4);
+		return at;
+	}
+
+	private int symbolOf(Model model, int i) {
+		return model.getSymbols() == symbols ? model.getSymbol(i) : symbols.intern(model.getName(i));
+	}
+
+	private Model decode(ByteBuffer buffer) {
+		int n = getVarint(buffer);
+		int flags = buffer.get();
+		int[] ids = null;
+		if ((flags & FLAG_IDS) != 0) {
+			ids = new int[n];
+			int previous = 0;
+			for (int i = 0; i < n; i++) {
+				int zigzag = getVarint(buffer);
+				previous += (zigzag >>> 1) ^ -(zigzag & 1);
+				ids[i] = previous;
+			}
+		}
+		byte[] bits = new byte[(n + 7) / 8];
+		buffer.get(bits);
+		String[] values = null;
+		if ((flags & FLAG_VALUES) != 0) {
+			values = new String[n];
+			int count = getVarint(buffer);
+			for (int v = 0; v < count; v++) {
+				int i = getVarint(buffer);
+				byte[] bytes = new byte[getVarint(buffer)];
+				buffer.get(bytes);
+				values[i] = new String(bytes, UTF8);
+			}
+		}
+		Model model = new Model(symbols, n);
+		for (int i = 0; i < n; i++)
+			model.addSymbol(ids == null ? i : ids[i], (bits[i >>> 3] & (1 << (i & 7))) != 0,
+					values == null ? null : values[i]);
+		return model;
+	}
+
+	private void ensure(int length) {
+		if (length > record.length)
+			record = Arrays.copyOf(record, Math.max(length, record.length * 2));
+	}
+
+	private int putByte(int at, int b) {
+		ensure(at + 1);
+		record[at] = (byte) b;
+		return at + 1;
+	}
+
+	private int putVarint(int at, int value) {
+		ensure(at + 5);
+		while ((value & ~0x7F) != 0) {
+			record[at++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		record[at++] = (byte) value;
+		return at;
+	}
+
+	private static int getVarint(ByteBuffer buffer) {
+		int value = 0;
+		for (int shift = 0; ; shift += 7) {
+			byte b = buffer.get();
+			value |= (b & 0x7F) << shift;
+			if (b >= 0)
+				return value;
+		}
+	}
+}
@@ -0,0 +1,205 @@
+/*
+ *
+ * Project TouIST, 2015. Easily formalize and solve real-world sized problems
+ * using propositional logic and linear theory of reals with a nice GUI.
+ *
+ * https://github.com/touist/touist
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl-2.1.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     Alexis Comte, Abdelwahab Heba, Olivier Lezaud,
+ *     Skander Ben Slimane, Maël Valais
+ *
+ */
+
+package solution;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import touist.ProcessEvent;
+
+/**
+ * Reads the output of an external program (solver, translator...) in a
+ * background thread. Every complete line is pushed into a queue on which
+ * the user can block with nextLine() instead of polling with
+ * BufferedReader.ready() and wait(10).
+ *
+ * When the stream is closed (i.e., the program has finished), the end of the
+ * stream is pushed into the queue as an event (nextLine() returns null) and,
+ * if a Process has been given, its exit value is recorded and waitForExit()
+ * is released. This replaces the isAlive() check that used to catch the
+ * exception of Process.exitValue() (p.isAlive() is java jre >= 1.8).
+ *
+ * @author Maël
+ */
+public class ProcessOutputReader implements Runnable {
+	/**
+	 * Marks the end of the stream in the queue (compared by reference)
+	 */
+	private static final String END_OF_STREAM = new String("<end of stream>");
+
+	private final BufferedReader reader;
+	private final Process process;
+	private final String name;
+	private final ProcessEvent event;
+	private final BlockingQueue<String> lines = new LinkedBlockingQueue<String>();
+	private final CountDownLatch exited = new CountDownLatch(1);
+	private volatile int exitValue = -1;
+	private volatile boolean endOfStream = false;
+
+	/**
+	 * @param stream the output to read, e.g., p.getInputStream()
+	 * @param process the process that writes into the stream; its exit value
+	 * is retrieved when the stream ends. Can be null (e.g. for stderr when
+	 * stdout is already read by another ProcessOutputReader).
+	 * @param name the name of the thread (for debugging)
+	 */
+	public ProcessOutputReader(InputStream stream, Process process, String name) {
+		this(stream, process, name, null);
+	}
+
+	/**
+	 * Same as above, but the bytes read are counted in 'event' and, if
+	 * a process is given, its exit code is given to the event when it exits.
+	 * The event is only committed when every reader of the event has
+	 * reached the end of its stream (see ProcessEvent.addReader()).
+	 */
+	public ProcessOutputReader(InputStream stream, Process process, String name, ProcessEvent event) {
+		this.reader = new BufferedReader(new InputStreamReader(event == null ? stream : event.count(stream)));
+		this.process = process;
+		this.name = name;
+		this.event = event;
+	}
+
+	/**
+	 * Starts reading in a daemon thread.
+	 * @return this reader
+	 */
+	public ProcessOutputReader start() {
+		if (event != null)
+			event.addReader();
+		Thread t = new Thread(this, name);
+		t.setDaemon(true);
+		t.start();
+		return this;
+	}
+
+	@Override
+	public void run() {
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lines.add(line);
+			}
+		} catch (IOException e) {
+			// The stream has been closed (e.g., the process has been destroyed)
+		} finally {
+			try {
+				reader.close();
+			} catch (IOException e) {
+			}
+			if (process != null) {
+				try {
+					exitValue = process.waitFor();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				if (event != null)
+					event.end(exitValue);
+			}
+			if (event != null)
+				event.readerEnded();
+			endOfStream = true;
+			lines.add(END_OF_STREAM);
+			exited.countDown();
+		}
+	}
+
+	/**
+	 * Blocks until a complete line has been read or until the end of the
+	 * stream.
+	 * @param timeout in milliseconds
+	 * @return the line, or null if the stream has ended (the program exited)
+	 * @throws TimeoutException if nothing was read before the timeout
+	 * @throws InterruptedException
+	 */
+	public String nextLine(long timeout) throws TimeoutException, InterruptedException {
+		String line = lines.poll(timeout, TimeUnit.MILLISECONDS);
+		if (line == null) {
+			throw new TimeoutException("no output from '"+name+"' after "+timeout+"ms");
+		}
+		if (line == END_OF_STREAM) {
+			lines.add(END_OF_STREAM); // next calls will also return null
+			return null;
+		}
+		return line;
+	}
+
+	/**
+	 * Same as nextLine() but does not block.
+	 * @return the next line, or null if no complete line is available yet or
+	 * if the stream has ended (see hasExited())
+	 */
+	public String pollLine() {
+		String line = lines.peek();
+		if (line == null || line == END_OF_STREAM)
+			return null;
+		return lines.poll();
+	}
+
+	/**
+	 * Gives every line that has been read so far without blocking.
+	 * @return the lines separated by "\n" (each line ends with "\n")
+	 */
+	public String drain() {
+		StringBuilder sb = new StringBuilder();
+		String line;
+		while ((line = lines.peek()) != null && line != END_OF_STREAM) {
+			sb.append(lines.poll()).append('\n');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Blocks until the stream has ended (and the process has exited if a
+	 * process was given).
+	 * @param timeout in milliseconds
+	 * @return true if the process exited before the timeout
+	 * @throws InterruptedException
+	 */
+	public boolean waitForExit(long timeout) throws InterruptedException {
+		return exited.await(timeout, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @return true if the stream has ended, i.e., the program has exited
+	 */
+	public boolean hasExited() {
+		return endOfStream;
+	}
+
+	/**
+	 * @return the exit value of the process; only meaningful once
+	 * hasExited() is true.
+	 */
+	public int exitValue() {
+		return exitValue;
+	}
+}
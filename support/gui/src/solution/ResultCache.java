@@ -0,0 +1,157 @@
+/*
+ *
+ * Project TouIST, 2015. Easily formalize and solve real-world sized problems
+ * using propositional logic and linear theory of reals with a nice GUI.
+ *
+ * https://github.com/touist/touist
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl-2.1.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     Alexis Comte, Abdelwahab Heba, Olivier Lezaud,
+ *     Skander Ben Slimane, Maël Valais
+ *
+ */
+
+package solution;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import entity.Model;
+import entity.SymbolTable;
+import touist.DiskCache;
+import touist.TouIST;
+
+/**
+ * Remembers the result of a Solve on disk: whether the problem is
+ * satisfiable and its first models (see SolverCached). The entries are in
+ * TouIST.getWhereToSaveTemp()/cache/results and the least recently used
+ * ones are removed when the cache is bigger than "touist.resultCacheSize"
+ * (in MB, default 64).
+ *
+ * The key of an entry is made of the hash of the translated problem (see
+ * translation.DimacsDigest) and of the solver options.
+ *
+ * @author Maël
+ */
+public class ResultCache {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final String HEADER = "touist-results 1";
+	private static final String COMPLETE = "complete";
+	private static final String PARTIAL = "partial";
+
+	/**
+	 * What is stored for a problem
+	 */
+	static class Entry {
+		final List<Model> models;
+		/**
+		 * true if models contains every model of the problem
+		 */
+		final boolean complete;
+		Entry(List<Model> models, boolean complete) {
+			this.models = models;
+			this.complete = complete;
+		}
+	}
+
+	private final DiskCache cache;
+	private final int modelsKept;
+
+	public ResultCache() {
+		this(TouIST.getWhereToSaveTemp() + File.separator + "cache" + File.separator + "results",
+				Long.getLong("touist.resultCacheSize", 64) * 1024 * 1024,
+				Integer.getInteger("touist.cachedModels", 100));
+	}
+
+	/**
+	 * @param directory where the entries are stored
+	 * @param maxSize the maximum size of the cache in bytes
+	 * @param modelsKept the number of models (K) stored for each problem
+	 */
+	public ResultCache(String directory, long maxSize, int modelsKept) {
+		this.cache = new DiskCache(directory, maxSize);
+		this.modelsKept = modelsKept;
+	}
+
+	/**
+	 * @param problemHash the hash of the translated problem
+	 * @param options what else changes the result, e.g. the solver type
+	 * @return the key of the entry
+	 */
+	public static String key(String problemHash, String options) {
+		return DiskCache.hash((problemHash + "\n" + options).getBytes(UTF8));
+	}
+
+	/**
+	 * Gives a solver that first gives the models stored in the cache for
+	 * this key (if any) and then asks the real solver; the models given are
+	 * stored for the next time.
+	 * @param key see key()
+	 * @param solver the real solver; it is only launched if the cache does
+	 * not have enough models
+	 */
+	public Solver wrap(String key, Solver solver) {
+		return new SolverCached(this, key, solver, read(key));
+	}
+
+	int getModelsKept() {
+		return modelsKept;
+	}
+
+	/**
+	 * @return the entry or null if there is none (or if it is not valid)
+	 */
+	Entry read(String key) {
+		byte[] content = cache.get(key);
+		if (content == null)
+			return null;
+		String[] lines = new String(content, UTF8).split("\n", -1);
+		if (lines.length < 2 || !lines[0].equals(HEADER)
+				|| !(lines[1].equals(COMPLETE) || lines[1].equals(PARTIAL))) {
+			cache.remove(key);
+			return null;
+		}
+		List<Model> models = new ArrayList<Model>();
+		SymbolTable symbols = new SymbolTable();
+		for (int i = 2; i < lines.length; i++) {
+			if (lines[i].isEmpty() && i == lines.length - 1)
+				break; // the last "\n"
+			Model model = new Model(symbols);
+			if (!lines[i].isEmpty()) {
+				for (String literal : lines[i].split("\t"))
+					model.add(literal.substring(1), literal.charAt(0) == '+');
+			}
+			models.add(model);
+		}
+		return new Entry(models, lines[1].equals(COMPLETE));
+	}
+
+	void write(String key, List<Model> models, boolean complete) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(HEADER).append('\n').append(complete ? COMPLETE : PARTIAL).append('\n');
+		for (Model model : models) {
+			for (int i = 0; i < model.size(); i++) {
+				String name = model.getName(i);
+				if (name.indexOf('\t') != -1 || name.indexOf('\n') != -1)
+					return; // cannot be stored
+				if (i > 0)
+					sb.append('\t');
+				sb.append(model.isTrue(i) ? '+' : '-').append(name);
+			}
+			sb.append('\n');
+		}
+		cache.put(key, sb.toString().getBytes(UTF8));
+	}
+}
@@ -25,8 +25,12 @@ package solution;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import entity.Model;
+import entity.SymbolTable;
+import translation.LiteralsTable;
 
 /**
  * A sub-class must implement Solver. The inherited class allows the user to
@@ -38,6 +42,7 @@ import entity.Model;
  * @modified Maël
  */
 public abstract class Solver {
+	private SymbolTable symbols;
 
 	public Solver(BufferedReader reader) {
 		super();
@@ -81,12 +86,68 @@ public abstract class Solver {
 	protected abstract Model nextModel() throws IOException, SolverExecutionException;
 
 	/**
-	 * ONLY used by ModelsIterator
-	 * @param rawModelOutput The output
-	 * @return a model with, if a literalMap was given, the translated literal.
-	 * If no literalMap is given, the Model stores the literal as given by the
-	 * solver (an integer).
-	 * @throws NotSatisfiableException if not satisfiable
+	 * ONLY used by ModelsIterator. Gives up to 'count' models at once; a
+	 * solver that can compute several models per request (e.g., a solver
+	 * running in another process) should override this method.
+	 * By default, only one model is given (using nextModel()).
+	 * @param count the maximum number of models wanted
+	 * @return the models; an empty list if there is no model left.
+	 * @throws IOException
+	 * @throws SolverExecutionException
+	 */
+	protected List<Model> nextModels(int count) throws IOException, SolverExecutionException {
+		List<Model> models = new ArrayList<Model>();
+		Model model = nextModel();
+		if (model != null)
+			models.add(model);
+		return models;
+	}
+
+	/**
+	 * @return the table of the names of the literals, shared by the models
+	 * given by this solver (see Model)
 	 */
-	protected abstract Model parseModel(String[] rawModelOutput);
+	protected synchronized SymbolTable getSymbols() {
+		if (symbols == null)
+			symbols = new SymbolTable();
+		return symbols;
+	}
+
+	/**
+	 * The propositions whose name begins with '&' are added by the
+	 * translator (issue #88): they are not shown to the user, so two models
+	 * that only differ on them are the same model. The solvers block each
+	 * model on the shown variables only (see ModelProducer).
+	 * @param literalName the name in the literals map (null if none)
+	 * @return true if the proposition is shown to the user
+	 */
+	protected static boolean isShown(String literalName) {
+		return literalName == null || literalName.charAt(0) != '&';
+	}
+
+	/**
+	 * Translates a model given as DIMACS integers (e.g. by SAT4J).
+	 * @param rawModel the signed literals (a '0' means 'end of model')
+	 * @param literalsMap the "literals map" ("table de correspondance")
+	 * @return a model with the translated literals; a literal that is not in
+	 * the literals map is stored as given by the solver (an integer).
+	 */
+	protected Model toModel(int[] rawModel, LiteralsTable literalsMap) {
+		Model model = new Model(getSymbols(), rawModel.length);
+		for (int literalInt : rawModel) {
+			if (literalInt != 0) { // '0' means 'end of model'
+				int literalCode = (literalInt > 0 ? literalInt : literalInt * (-1));
+				String literalString = literalsMap.name(literalCode);
+				if (literalString != null) {
+					// Added for filtering '&45' literals (issue #88)
+					if(literalString.charAt(0) != '&') {
+						model.add(literalString, literalInt > 0);
+					}
+				} else {
+					model.add(Integer.toString(literalCode), literalInt > 0);
+				}
+			}
+		}
+		return model;
+	}
 }
@@ -0,0 +1,210 @@
+/*
+ *
+ * Project TouIST, 2015. Easily formalize and solve real-world sized problems
+ * using propositional logic and linear theory of reals with a nice GUI.
+ *
+ * https://github.com/touist/touist
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl-2.1.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     Alexis Comte, Abdelwahab Heba, Olivier Lezaud,
+ *     Skander Ben Slimane, Maël Valais
+ *
+ */
+
+package solution;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import entity.Model;
+
+/**
+ * Gives the models stored in a ResultCache entry and, when there are no
+ * more stored models and the entry does not contain every model, asks the
+ * real solver (which is only launched at that moment). The real solver
+ * gives the stored models again: they are skipped.
+ *
+ * The models given (up to ResultCache.getModelsKept()) are written back into
+ * the cache when the real solver has no more models or when the solver is
+ * closed.
+ *
+ * @author Maël
+ */
+public class SolverCached extends Solver {
+	private final ResultCache cache;
+	private final String key;
+	private final Solver solver;
+	private final boolean complete;
+	private final List<Model> stored;
+	private int replayed = 0;
+	/**
+	 * The models that have been given from the cache (see keyOf())
+	 */
+	private final Set<String> given = new HashSet<String>();
+	private boolean launched = false;
+	private volatile boolean closed = false;
+
+	/**
+	 * The models that will be written into the cache
+	 */
+	private final List<Model> recorded;
+	private boolean allRecorded = true;
+	private boolean exhausted = false;
+	private boolean written = false;
+	private ModelList models;
+
+	SolverCached(ResultCache cache, String key, Solver solver, ResultCache.Entry entry) {
+		this.cache = cache;
+		this.key = key;
+		this.solver = solver;
+		this.stored = entry == null ? Collections.<Model>emptyList() : entry.models;
+		this.complete = entry != null && entry.complete;
+		this.recorded = new ArrayList<Model>(stored);
+		this.written = entry != null;
+		models = new ModelList(this);
+	}
+
+	/**
+	 * Only launches the real solver if there is nothing in the cache.
+	 */
+	@Override
+	public void launch() throws IOException, InterruptedException {
+		if (stored.isEmpty() && !complete) {
+			solver.launch();
+			launched = true;
+		} else {
+			System.out.println("launch(): " + stored.size() + " models found in the cache"
+					+ (complete ? " (all of them)" : ""));
+		}
+	}
+
+	@Override
+	public ModelList getModelList() throws SolverExecutionException {
+		return models;
+	}
+
+	/**
+	 * Can be called while nextModels() is waiting for the real solver on
+	 * another thread (see ModelProducer): the real solver is closed first,
+	 * then the models recorded are written.
+	 */
+	@Override
+	public void close() {
+		boolean launched;
+		synchronized (this) {
+			closed = true;
+			launched = this.launched;
+		}
+		// A SolverIncremental has reserved its guard in the session even if
+		// it has not been asked anything: it must always be closed
+		if (launched || solver instanceof SolverIncremental)
+			solver.close();
+		synchronized (this) {
+			if (!written && !recorded.isEmpty())
+				cache.write(key, recorded, false);
+			written = true;
+		}
+	}
+
+	@Override
+	protected Model nextModel() throws IOException, SolverExecutionException {
+		List<Model> next = nextModels(1);
+		return next.isEmpty() ? null : next.get(0);
+	}
+
+	@Override
+	protected List<Model> nextModels(int count) throws IOException, SolverExecutionException {
+		if (replayed < stored.size()) {
+			List<Model> next = new ArrayList<Model>(stored.subList(replayed,
+					Math.min(stored.size(), replayed + count)));
+			replayed += next.size();
+			for (Model model : next)
+				given.add(keyOf(model));
+			return next;
+		}
+		if (complete || exhausted || closed)
+			return new ArrayList<Model>();
+		if (!launched) {
+			System.out.println("nextModels(): no more models in the cache, launching the solver");
+			try {
+				solver.launch();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new SolverExecutionException("nextModels(): interrupted while launching the solver");
+			}
+			synchronized (this) {
+				launched = true;
+			}
+			if (closed) { // close() did not know that the solver was launched
+				solver.close();
+				return new ArrayList<Model>();
+			}
+		}
+		List<Model> next = new ArrayList<Model>();
+		while (next.isEmpty()) {
+			List<Model> fromSolver = solver.nextModels(count);
+			synchronized (this) {
+				// A closed solver gives no model: that is not the end of the
+				// models, the cache must not be told that they are all there
+				if (closed)
+					return new ArrayList<Model>();
+				if (fromSolver.isEmpty()) {
+					exhausted = true;
+					if (!written || !allRecorded || recorded.size() > stored.size())
+						cache.write(key, recorded, allRecorded);
+					written = true;
+					return next;
+				}
+				for (Model model : fromSolver) {
+					if (given.contains(keyOf(model)))
+						continue; // already given from the cache
+					next.add(model);
+					record(model);
+				}
+			}
+		}
+		return next;
+	}
+
+	private void record(Model model) {
+		if (recorded.size() < cache.getModelsKept()) {
+			recorded.add(model);
+			written = false;
+			if (recorded.size() == cache.getModelsKept()) {
+				cache.write(key, recorded, false);
+				written = true;
+			}
+		} else {
+			allRecorded = false;
+		}
+	}
+
+	/**
+	 * @return a text that is the same for two models giving the same value
+	 * to the same propositions, whatever the order of the literals
+	 */
+	private static String keyOf(Model model) {
+		List<String> literals = new ArrayList<String>();
+		for (int i = 0; i < model.size(); i++)
+			literals.add(model.getName(i) + (model.isTrue(i) ? "\t+" : "\t-"));
+		Collections.sort(literals);
+		StringBuilder sb = new StringBuilder();
+		for (String literal : literals)
+			sb.append(literal).append('\n');
+		return sb.toString();
+	}
+}
@@ -0,0 +1,141 @@
+/*
+ *
+ * Project TouIST, 2015. Easily formalize and solve real-world sized problems
+ * using propositional logic and linear theory of reals with a nice GUI.
+ *
+ * https://github.com/touist/touist
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl-2.1.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     Alexis Comte, Abdelwahab Heba, Olivier Lezaud,
+ *     Skander Ben Slimane, Maël Valais
+ *
+ */
+
+package solution;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.sat4j.core.VecInt;
+import org.sat4j.specs.ContradictionException;
+import org.sat4j.specs.ISolver;
+import org.sat4j.specs.TimeoutException;
+
+import entity.Model;
+import translation.LiteralsTable;
+
+/**
+ * Enumerates the models of the problem currently loaded in an
+ * IncrementalSession (see IncrementalSession.update()).
+ *
+ * The selectors of the clauses in use are given as assumptions. Each model
+ * found is then blocked with a clause (-m or -g) where m is the model on the
+ * variables shown to the user (not the '&' ones) and g is a "guard"
+ * variable proper to this enumeration and also given as assumption; when
+ * the enumeration is closed, the session retracts the blocking clauses so
+ * that the next Solve starts from the whole set of models again.
+ *
+ * @author Maël
+ */
+public class SolverIncremental extends Solver {
+	private final IncrementalSession session;
+	private final ISolver solver;
+	private final int[] shownVariables;
+	private final LiteralsTable literalsMap;
+	private final int guard;
+	private final VecInt assumptions;
+	private boolean exhausted = false;
+	private volatile boolean closed = false; // see SolverSAT4J.close()
+	private ModelList models;
+
+	SolverIncremental(IncrementalSession session) {
+		this.session = session;
+		this.solver = session.getSolver();
+		int[] variables = session.getVariablesInUse();
+		this.literalsMap = session.getLiteralsMap();
+		int count = 0;
+		int[] shown = new int[variables.length];
+		for (int var : variables)
+			if (isShown(literalsMap.name(var)))
+				shown[count++] = var;
+		this.shownVariables = Arrays.copyOf(shown, count);
+		this.guard = session.newGuard();
+		int[] selectors = session.getSelectors();
+		int[] assumed = Arrays.copyOf(selectors, selectors.length + 1);
+		assumed[selectors.length] = guard;
+		this.assumptions = new VecInt(assumed);
+		models = new ModelList(this);
+	}
+
+	/**
+	 * Nothing to do: the clauses have already been given to the solver by
+	 * IncrementalSession.update().
+	 */
+	@Override
+	public void launch() throws IOException {
+	}
+
+	@Override
+	public ModelList getModelList() throws SolverExecutionException {
+		return models;
+	}
+
+	/**
+	 * Stops the search (if a model is being computed in another thread) and
+	 * tells the session that the blocking clauses of this enumeration can be
+	 * retracted. The solver itself is kept alive by the session.
+	 */
+	@Override
+	public void close() {
+		if (closed)
+			return;
+		closed = true;
+		solver.expireTimeout();
+		session.closeEnumeration(guard);
+		System.out.println("close(): solver has been closed correctly");
+	}
+
+	@Override
+	protected Model nextModel() throws IOException, SolverExecutionException {
+		if (exhausted || closed)
+			return null;
+		synchronized (session) {
+			try {
+				if (!solver.isSatisfiable(assumptions)) {
+					exhausted = true;
+					return null;
+				}
+			} catch (TimeoutException e) {
+				if (closed) // the timeout was caused by close()
+					return null;
+				throw new SolverExecutionException("nextModel(): exception: "
+						+ "the solver didn't find any model (timeout = "
+						+ solver.getTimeout() + "s)");
+			}
+			Model model = new Model(getSymbols(), shownVariables.length);
+			int[] blocking = new int[shownVariables.length + 1];
+			for (int i = 0; i < shownVariables.length; i++) {
+				boolean value = solver.model(shownVariables[i]);
+				blocking[i] = value ? -shownVariables[i] : shownVariables[i];
+				model.add(literalsMap.name(shownVariables[i]), value);
+			}
+			blocking[shownVariables.length] = -guard;
+			try {
+				solver.addClause(new VecInt(blocking));
+			} catch (ContradictionException e) {
+				exhausted = true;
+			}
+			return model;
+		}
+	}
+}
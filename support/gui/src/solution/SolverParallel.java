@@ -0,0 +1,337 @@
+/*
+ *
+ * Project TouIST, 2015. Easily formalize and solve real-world sized problems
+ * using propositional logic and linear theory of reals with a nice GUI.
+ *
+ * https://github.com/touist/touist
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl-2.1.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     Alexis Comte, Abdelwahab Heba, Olivier Lezaud,
+ *     Skander Ben Slimane, Maël Valais
+ *
+ */
+
+package solution;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.sat4j.core.VecInt;
+import org.sat4j.minisat.SolverFactory;
+import org.sat4j.reader.DimacsReader;
+import org.sat4j.reader.ParseFormatException;
+import org.sat4j.specs.ContradictionException;
+import org.sat4j.specs.ISolver;
+import org.sat4j.specs.TimeoutException;
+
+import entity.Model;
+import translation.LiteralsTable;
+
+/**
+ * Enumerates all the models on several cores. The search space is split
+ * into 2^k "cubes" by fixing k variables of the problem (the ones that
+ * appear the most in the clauses); each cube is enumerated by one of the
+ * workers, each worker having its own SAT4J solver loaded with the DIMACS
+ * file and taking the next cube when it is done with one. A cube is given
+ * as assumptions, so the blocking clauses added for one cube are satisfied
+ * in the other cubes and the same solver can be reused.
+ *
+ * The cubes are fixed on shown variables only and every model is blocked on
+ * the shown variables (not the '&' ones): the cubes are disjoint and a model
+ * cannot be found twice. The models are put
+ * into a bounded queue that is read by nextModel(); when the reader is too
+ * slow (e.g., the user looks at the models one by one), the workers wait.
+ *
+ * The number of workers is given by "touist.parallelWorkers" (default: the
+ * number of processors) and the number of cube variables by
+ * "touist.cubeVariables" (default: enough for four cubes per worker).
+ *
+ * @author Maël
+ */
+public class SolverParallel extends Solver {
+	/**
+	 * Same timeout as the one used by minisat.jar (in seconds)
+	 */
+	private static final int SOLVER_TIMEOUT = 3600;
+	/**
+	 * Number of models that can be waiting to be read
+	 */
+	private static final int QUEUE_SIZE = 1024;
+	/**
+	 * More than 2^16 cubes would not make sense
+	 */
+	private static final int MAX_CUBE_VARIABLES = 16;
+	/**
+	 * Put into the queue when every worker is done (compared by reference)
+	 */
+	private static final Model END_OF_MODELS = new Model();
+
+	private final String dimacsFilePath;
+	private final LiteralsTable literalsMap; // "table de correspondance"
+	private final int workers;
+	private int cubeVariables;
+	/**
+	 * The models are blocked on these variables only (not the '&' ones)
+	 */
+	private int[] shownVariables;
+	private int nbVariables = 0;
+
+	private final BlockingQueue<Model> queue = new ArrayBlockingQueue<Model>(QUEUE_SIZE);
+	private final ConcurrentLinkedQueue<int[]> cubes = new ConcurrentLinkedQueue<int[]>();
+	private final List<ISolver> solvers = new ArrayList<ISolver>();
+	private final List<Thread> threads = new ArrayList<Thread>();
+	private final AtomicInteger running = new AtomicInteger();
+	private volatile Exception error = null;
+	private volatile boolean closed = false;
+	// nextModels() is not always called by the same thread (see ModelProducer)
+	private volatile boolean finished = false;
+	private volatile boolean errorThrown = false;
+	private ModelList models;
+
+	/**
+	 * @param dimacsFilePath the DIMACS file
+	 * @param literalsMap the "literals map" ("table de correspondance")
+	 */
+	public SolverParallel(String dimacsFilePath, Map<Integer, String> literalsMap) {
+		this.dimacsFilePath = dimacsFilePath;
+		this.literalsMap = LiteralsTable.of(literalsMap);
+		this.workers = Math.max(1, Integer.getInteger("touist.parallelWorkers",
+				Runtime.getRuntime().availableProcessors()));
+		int cubesWanted = 4 * workers;
+		this.cubeVariables = Math.min(MAX_CUBE_VARIABLES, Integer.getInteger("touist.cubeVariables",
+				32 - Integer.numberOfLeadingZeros(cubesWanted - 1)));
+		models = new ModelList(this);
+	}
+
+	/**
+	 * Chooses the cube variables, loads the DIMACS file into one solver per
+	 * worker and starts the workers.
+	 */
+	@Override
+	public void launch() throws IOException {
+		int[] splitOn = chooseCubeVariables();
+		shownVariables = new int[nbVariables];
+		int count = 0;
+		for (int var = 1; var <= nbVariables; var++)
+			if (isShown(literalsMap.name(var)))
+				shownVariables[count++] = var;
+		shownVariables = Arrays.copyOf(shownVariables, count);
+		cubeVariables = splitOn.length;
+		for (int cube = 0; cube < (1 << cubeVariables); cube++) {
+			int[] assumptions = new int[cubeVariables];
+			for (int i = 0; i < cubeVariables; i++)
+				assumptions[i] = ((cube >> i) & 1) == 1 ? splitOn[i] : -splitOn[i];
+			cubes.add(assumptions);
+		}
+		System.out.println("launch(): enumerating " + cubes.size() + " cubes with "
+				+ workers + " workers (cube variables: " + cubeVariables + ")");
+		running.set(workers);
+		for (int i = 0; i < workers; i++) {
+			final ISolver solver = SolverFactory.newDefault();
+			solver.setTimeout(SOLVER_TIMEOUT);
+			solvers.add(solver);
+			Thread t = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					work(solver);
+				}
+			}, "enumeration-worker-" + i);
+			t.setDaemon(true);
+			threads.add(t);
+		}
+		for (Thread t : threads)
+			t.start();
+	}
+
+	/**
+	 * Counts the occurrences of each variable in the clauses and returns the
+	 * cubeVariables most frequent ones. The '&' variables are avoided because
+	 * they are not shown in the models: two cubes would give the same model.
+	 * The number of variables (nbVariables) is also read.
+	 */
+	private int[] chooseCubeVariables() throws IOException {
+		int[] occurrences = new int[literalsMap.size() + 2];
+		BufferedReader reader = new BufferedReader(new FileReader(dimacsFilePath));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.isEmpty() || line.charAt(0) == 'c')
+					continue;
+				if (line.charAt(0) == 'p') { // p cnf nbVariables nbClauses
+					nbVariables = Integer.parseInt(line.trim().split("\\s+")[2]);
+					continue;
+				}
+				for (String token : line.trim().split("\\s+")) {
+					if (token.isEmpty())
+						continue;
+					int var = Math.abs(Integer.parseInt(token));
+					if (var == 0) // end of clause
+						continue;
+					if (var >= occurrences.length)
+						occurrences = Arrays.copyOf(occurrences, var * 2);
+					occurrences[var]++;
+					nbVariables = Math.max(nbVariables, var);
+				}
+			}
+		} catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+			throw new IOException("chooseCubeVariables(): incorrect DIMACS content: " + e.getMessage());
+		} finally {
+			reader.close();
+		}
+		List<Integer> chosen = new ArrayList<Integer>();
+		boolean[] taken = new boolean[occurrences.length];
+		while (chosen.size() < cubeVariables) {
+			int best = 0;
+			for (int var = 1; var < occurrences.length; var++) {
+				String name = literalsMap.name(var);
+				if (!taken[var] && occurrences[var] > occurrences[best]
+						&& name != null && name.charAt(0) != '&')
+					best = var;
+			}
+			if (best == 0) // less variables than wanted
+				break;
+			taken[best] = true;
+			chosen.add(best);
+		}
+		int[] variables = new int[chosen.size()];
+		for (int i = 0; i < variables.length; i++)
+			variables[i] = chosen.get(i);
+		return variables;
+	}
+
+	/**
+	 * What each worker does: load the problem and enumerate the cubes until
+	 * there is no cube left. If a worker fails (e.g. a timeout), its cube
+	 * cannot be enumerated: the other workers are stopped too, the models
+	 * already found are read and then nextModels() gives the error.
+	 */
+	private void work(ISolver solver) {
+		try {
+			new DimacsReader(solver).parseInstance(dimacsFilePath);
+			int[] cube;
+			while (!closed && error == null && (cube = cubes.poll()) != null) {
+				VecInt assumptions = new VecInt(cube);
+				while (!closed && error == null && solver.isSatisfiable(assumptions)) {
+					queue.put(toModel(solver.model(), literalsMap));
+					if (shownVariables.length == 0) // the only model is the empty one
+						break;
+					int[] blocking = new int[shownVariables.length];
+					for (int i = 0; i < shownVariables.length; i++)
+						blocking[i] = solver.model(shownVariables[i]) ? -shownVariables[i] : shownVariables[i];
+					solver.addClause(new VecInt(blocking));
+				}
+			}
+		} catch (ContradictionException e) {
+			// The problem or the rest of the cube is unsatisfiable
+		} catch (TimeoutException e) {
+			if (!closed)
+				fail(e); // or stopped because another worker has failed
+		} catch (InterruptedException e) {
+			// close() has been called
+		} catch (ParseFormatException e) {
+			fail(new IOException("work(): incorrect DIMACS content: " + e.getMessage()));
+		} catch (Exception e) {
+			fail(e);
+		} finally {
+			if (running.decrementAndGet() == 0 && !closed) {
+				try {
+					queue.put(END_OF_MODELS);
+				} catch (InterruptedException e) {
+				}
+			}
+		}
+	}
+
+	/**
+	 * Keeps the first error and stops the other workers.
+	 */
+	private synchronized void fail(Exception e) {
+		if (error != null)
+			return;
+		error = e;
+		for (ISolver solver : solvers)
+			solver.expireTimeout();
+	}
+
+	@Override
+	public ModelList getModelList() throws SolverExecutionException {
+		return models;
+	}
+
+	/**
+	 * Stops every worker; the models that have not been read are lost.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		for (ISolver solver : solvers)
+			solver.expireTimeout();
+		for (Thread t : threads)
+			t.interrupt();
+		queue.clear();
+		queue.offer(END_OF_MODELS); // in case nextModels() is waiting
+		System.out.println("close(): solver has been closed correctly");
+	}
+
+	@Override
+	protected Model nextModel() throws IOException, SolverExecutionException {
+		List<Model> next = nextModels(1);
+		return next.isEmpty() ? null : next.get(0);
+	}
+
+	/**
+	 * Waits for at least one model, then gives the models that are already
+	 * waiting in the queue (at most count). If a worker has failed, the
+	 * error is thrown once every model found has been given.
+	 */
+	@Override
+	protected List<Model> nextModels(int count) throws IOException, SolverExecutionException {
+		List<Model> next = new ArrayList<Model>();
+		if (closed)
+			return next;
+		if (finished) {
+			if (error != null && !errorThrown) {
+				errorThrown = true;
+				throw new SolverExecutionException("nextModels(): exception: " + error.getMessage());
+			}
+			return next;
+		}
+		try {
+			next.add(queue.take());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return new ArrayList<Model>();
+		}
+		queue.drainTo(next, count - 1);
+		int end = -1;
+		for (int i = 0; i < next.size() && end == -1; i++)
+			if (next.get(i) == END_OF_MODELS)
+				end = i;
+		if (end != -1) {
+			finished = true;
+			next = new ArrayList<Model>(next.subList(0, end));
+			if (next.isEmpty())
+				return nextModels(count); // the error, if any
+		}
+		return next;
+	}
+}
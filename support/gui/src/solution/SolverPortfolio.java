@@ -0,0 +1,228 @@
+/*
+ *
+ * Project TouIST, 2015. Easily formalize and solve real-world sized problems
+ * using propositional logic and linear theory of reals with a nice GUI.
+ *
+ * https://github.com/touist/touist
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl-2.1.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     Alexis Comte, Abdelwahab Heba, Olivier Lezaud,
+ *     Skander Ben Slimane, Maël Valais
+ *
+ */
+
+package solution;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import entity.Model;
+
+/**
+ * Runs several differently configured solvers in parallel on the same DIMACS
+ * file and keeps the one that answers first (a model or "unsatisfiable");
+ * the other ones are closed. The next models are then all given by that
+ * solver.
+ *
+ * The configurations are given by the system property "touist.portfolio",
+ * a comma-separated list of SAT4J solver names (see
+ * SolverFactory.instance().solverNames()) where "minisat.jar" stands for the
+ * external solver (SolverTestSAT4J), e.g.
+ *     -Dtouist.portfolio=Default,Glucose21,BestWL,minisat.jar
+ * By default, the first DEFAULT_CONFIGURATIONS are used, at most one per
+ * available processor.
+ *
+ * @author Maël
+ */
+public class SolverPortfolio extends Solver {
+	/**
+	 * Name of the external minisat.jar in the "touist.portfolio" list
+	 */
+	public static final String EXTERNAL = "minisat.jar";
+	/**
+	 * Restart and heuristic settings that behave differently enough
+	 */
+	private static final String[] DEFAULT_CONFIGURATIONS = {
+		"Default", "Glucose21", "BestWL", "MiniLearningHeapRsatExpSimpLuby",
+		"MiniLearningHeapEZSimpLongRestarts", "DefaultAutoErasePhaseSaving",
+		"MiniSATHeapExpSimp", EXTERNAL
+	};
+
+	private final List<Solver> candidates = new ArrayList<Solver>();
+	private final List<String> names = new ArrayList<String>();
+	private Solver winner = null;
+	private volatile boolean closed = false;
+	private ModelList models;
+
+	/**
+	 * @param dimacsFilePath the DIMACS file given to every solver
+	 * @param literalsMap the "literals map" ("table de correspondance")
+	 */
+	public SolverPortfolio(String dimacsFilePath, Map<Integer, String> literalsMap) {
+		for (String name : getConfigurations()) {
+			if (EXTERNAL.equals(name))
+				candidates.add(new SolverTestSAT4J(dimacsFilePath, literalsMap));
+			else
+				candidates.add(new SolverSAT4J(dimacsFilePath, literalsMap, name));
+			names.add(name);
+		}
+		models = new ModelList(this);
+	}
+
+	private static List<String> getConfigurations() {
+		List<String> configurations = new ArrayList<String>();
+		String property = System.getProperty("touist.portfolio");
+		if (property != null) {
+			for (String name : property.split(","))
+				if (!name.trim().isEmpty())
+					configurations.add(name.trim());
+		}
+		if (configurations.isEmpty()) {
+			int size = Math.min(DEFAULT_CONFIGURATIONS.length,
+					Math.max(2, Runtime.getRuntime().availableProcessors()));
+			for (int i = 0; i < size; i++)
+				configurations.add(DEFAULT_CONFIGURATIONS[i]);
+		}
+		return configurations;
+	}
+
+	/**
+	 * Nothing is launched yet: each solver is launched in its own thread when
+	 * the first model is asked (see race()).
+	 */
+	@Override
+	public void launch() throws IOException {
+		System.out.println("launch(): portfolio of " + names);
+	}
+
+	@Override
+	public ModelList getModelList() throws SolverExecutionException {
+		return models;
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		for (Solver candidate : candidates)
+			closeQuietly(candidate);
+	}
+
+	/**
+	 * Closes a candidate that may still be launching in another thread; a
+	 * failure must not prevent the other candidates from being closed.
+	 */
+	private static void closeQuietly(Solver candidate) {
+		try {
+			candidate.close();
+		} catch (RuntimeException e) {
+			System.err.println("close(): could not close a solver: " + e);
+		}
+	}
+
+	@Override
+	protected Model nextModel() throws IOException, SolverExecutionException {
+		if (winner == null)
+			return race();
+		return winner.nextModel();
+	}
+
+	@Override
+	protected List<Model> nextModels(int count) throws IOException, SolverExecutionException {
+		if (winner == null) {
+			List<Model> first = new ArrayList<Model>();
+			Model model = race();
+			if (model != null)
+				first.add(model);
+			return first;
+		}
+		return winner.nextModels(count);
+	}
+
+	/**
+	 * Launches every solver and asks each of them for a first model; the
+	 * first one that answers becomes the winner and the others are closed.
+	 * @return the first model of the winner (null if unsatisfiable)
+	 */
+	private Model race() throws IOException, SolverExecutionException {
+		if (closed)
+			return null;
+		ExecutorService executor = Executors.newFixedThreadPool(candidates.size(), new ThreadFactory() {
+			private int count = 0;
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "portfolio-" + names.get(count++));
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		CompletionService<Integer> race = new ExecutorCompletionService<Integer>(executor);
+		final Model[] firstModels = new Model[candidates.size()];
+		List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+		for (int i = 0; i < candidates.size(); i++) {
+			final int index = i;
+			futures.add(race.submit(new Callable<Integer>() {
+				@Override
+				public Integer call() throws Exception {
+					Solver candidate = candidates.get(index);
+					candidate.launch();
+					firstModels[index] = candidate.nextModel();
+					return index;
+				}
+			}));
+		}
+		Throwable lastError = null;
+		try {
+			for (int i = 0; i < candidates.size() && !closed; i++) {
+				try {
+					int index = race.take().get();
+					winner = candidates.get(index);
+					System.out.println("race(): '" + names.get(index) + "' answered first");
+					break;
+				} catch (ExecutionException e) {
+					// This solver failed, wait for the other ones
+					lastError = e.getCause();
+					System.err.println("race(): a solver failed: " + e.getCause());
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			// The losers are stopped before being closed, so that a solver
+			// still in launch() sees that it is closed (see SolverTestSAT4J)
+			for (int i = 0; i < candidates.size(); i++)
+				if (candidates.get(i) != winner)
+					futures.get(i).cancel(true);
+			executor.shutdownNow();
+			for (Solver candidate : candidates)
+				if (candidate != winner)
+					closeQuietly(candidate);
+		}
+		if (winner == null) {
+			if (closed || lastError == null)
+				return null;
+			throw new SolverExecutionException("race(): exception: no solver of the portfolio "
+					+ "succeeded; last error: " + lastError.getMessage());
+		}
+		return firstModels[candidates.indexOf(winner)];
+	}
+}
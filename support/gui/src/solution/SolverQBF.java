@@ -27,7 +27,6 @@ import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.net.URI;
@@ -44,6 +43,7 @@ import java.util.regex.Pattern;
 
 import entity.Literal;
 import entity.Model;
+import touist.ProcessEvent;
 import translation.TranslationError;
 
 /**
@@ -58,8 +58,8 @@ public class SolverQBF extends Solver {
 	private Process p;
 	private PrintWriter stdin;
 	private BufferedReader reader;
-	private BufferedReader stderr;
-	private BufferedReader stdout;
+	private ProcessOutputReader stderr;
+	private ProcessOutputReader stdout;
 	private List<String> options = new ArrayList<>();
 	public List<TranslationError> errors = new ArrayList<TranslationError>();
 
@@ -85,18 +85,6 @@ public class SolverQBF extends Solver {
 		models = new ModelList(this);
 	}
 
-    /**
-     * For java jre 1.6 and 1.7 compatibility (p.isAlive() is java jre >= 1.8)
-     */
-	private boolean isAlive(Process process) {
-	    try {
-	        process.exitValue();
-	        return false;
-	    } catch (Exception e) {
-	        return true;
-	    }
-	}
-	
 	@Override
 	public void launch() throws IOException, InterruptedException {
 		// TODO We should be able to re-use the Solver instance
@@ -117,17 +105,22 @@ public class SolverQBF extends Solver {
 		
         System.out.println("translate_solve(): cmd executed: "+cmd.toString());
 		
+        // The event ends when touist exits (see ProcessOutputReader)
+        ProcessEvent event = ProcessEvent.begin(cmd);
         this.p = Runtime.getRuntime().exec(cmd.toArray(new String[0]));
 
-        stdout = new BufferedReader(new InputStreamReader(p.getInputStream()));
-		stderr = new BufferedReader(new InputStreamReader(this.p.getErrorStream()));
+        stdout = new ProcessOutputReader(p.getInputStream(), p, "touist --qbf stdout", event).start();
+		stderr = new ProcessOutputReader(p.getErrorStream(), null, "touist --qbf stderr", event).start();
         stdin = new PrintWriter(new OutputStreamWriter(p.getOutputStream()));
         String s = "";
+        long inputSize = 0;
         while ((s = reader.readLine())!=null) {
         	stdin.println(s + "\n");
+        	inputSize += ProcessEvent.utf8Length(s) + 2;
         }
         stdin.flush();
         stdin.close();
+        event.setInputSize(inputSize);
 	}
 
 	@Override
@@ -166,28 +159,26 @@ public class SolverQBF extends Solver {
 		Model modelParsed = null;
 		// We wait for any output from the solver unless we get a timeout
 		boolean no_timeout = waitResult(WAIT_FOR_MODEL_TIMEOUT);
-		// Case 1 : we got some text to read from stdout
-		if(stdout.ready() && p.exitValue() == 0) {
-			String assignements = "";
-			while(stdout.ready())
-				assignements += stdout.readLine() + "\n";
-			modelParsed = parseModel(assignements.split("\\n"));
-		}
-		// Case 2 : no text but solver still running
-		if(!stdout.ready() && ! no_timeout) { // Nothing has been read
+		// Case 1 : no output and solver still running
+		if(! no_timeout) {
 			throw new SolverExecutionException("nextModel(): timeout = "
 					+Integer.toString(WAIT_FOR_MODEL_TIMEOUT)+"ms)");
 		}
+		// Case 2 : the solver has exited, we read what it gave on stdout
+		if(getReturnCode() == OK) {
+			String assignements = stdout.drain();
+			if(!assignements.isEmpty())
+				modelParsed = parseModel(assignements.split("\\n"));
+		}
 		
-		if(p.exitValue() == SOLVER_UNSAT)
+		if(getReturnCode() == SOLVER_UNSAT)
 			return modelParsed;
-		else if(p.exitValue() != OK) {
-			throw new SolverExecutionException("nextModel(): touist returned error code "+Integer.toString(p.exitValue())+"\n"+errors.toString());
+		else if(getReturnCode() != OK) {
+			throw new SolverExecutionException("nextModel(): touist returned error code "+Integer.toString(getReturnCode())+"\n"+errors.toString());
 		} else
 			return modelParsed;
 	}
 
-	@Override
 	protected Model parseModel(String[] rawModelOutput) {
 		Model model = new Model();
 		for (String line : rawModelOutput) {
@@ -212,7 +203,7 @@ public class SolverQBF extends Solver {
 	}
 
 	public int getReturnCode() {
-		return p.exitValue();
+		return stdout.exitValue();
 	}
 	
 	public List<TranslationError> getErrors() {
@@ -220,30 +211,24 @@ public class SolverQBF extends Solver {
 	}
 	
 	/**
-	 * 
+	 * Blocks until touist exits (touist gives the result only when exiting).
 	 * @param timeout in milliseconds
 	 * @return true if the result has been given before the timeout
 	 * @throws IOException
 	 */
 	public boolean waitResult(int timeout) throws IOException {
-		final long timeout_time = System.currentTimeMillis() + timeout;
-		while(!stdout.ready() && isAlive(p) && System.currentTimeMillis() < timeout_time){
-			// Active waiting (I know, it is a bad way to do it!)
-			try {
-				synchronized (this) { // for JavaRE6 compliance
-					this.wait(10);
-				}
-			} catch (InterruptedException e) {
-				// TODO I added this wait to avoid active complete waiting
-				e.printStackTrace();
-			}
+		try {
+			if(!stdout.waitForExit(timeout))
+				return false;
+			// stderr is closed at the same time as stdout
+			stderr.waitForExit(timeout);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("waitResult(): interrupted while waiting for touist");
 		}
-		if(p.exitValue() != OK) {
-			String linesStdErr = "";
-			while (stderr.ready())
-				linesStdErr += stderr.readLine() + "\n";
-			errors = TranslationError.parse(linesStdErr);
+		if(getReturnCode() != OK) {
+			errors = TranslationError.parse(stderr.drain());
 		}
-		return System.currentTimeMillis() < timeout_time;
+		return true;
 	}
 }
@@ -0,0 +1,267 @@
+/*
+ *
+ * Project TouIST, 2015. Easily formalize and solve real-world sized problems
+ * using propositional logic and linear theory of reals with a nice GUI.
+ *
+ * https://github.com/touist/touist
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl-2.1.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     Alexis Comte, Abdelwahab Heba, Olivier Lezaud,
+ *     Skander Ben Slimane, Maël Valais
+ *
+ */
+
+package solution;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.sat4j.core.VecInt;
+import org.sat4j.minisat.SolverFactory;
+import org.sat4j.reader.DimacsReader;
+import org.sat4j.reader.ParseFormatException;
+import org.sat4j.specs.ContradictionException;
+import org.sat4j.specs.ISolver;
+import org.sat4j.specs.TimeoutException;
+
+import entity.Model;
+import translation.DimacsListener;
+import translation.LiteralsTable;
+
+/**
+ * In-process implementation of the "Solver" abstract class. Instead of
+ * launching "minisat.jar" in a new JVM (see SolverTestSAT4J), the DIMACS
+ * file produced by the translator is loaded directly into a SAT4J ISolver
+ * running inside the GUI JVM. Each model found is blocked on the variables
+ * that are shown to the user only (not the '&' ones), so that every model
+ * given is new to the user.
+ *
+ * The clauses can also be given while the translator is still running
+ * (see TranslatorSAT.translate(BufferedReader, DimacsListener)): in that
+ * case, no DIMACS file is written nor read.
+ *
+ * @author Maël
+ */
+public class SolverSAT4J extends Solver implements DimacsListener {
+	/**
+	 * Same timeout as the one used by minisat.jar (in seconds)
+	 */
+	private static final int SOLVER_TIMEOUT = 3600;
+
+	// close() can be called by the GUI while nextModel() runs on the thread
+	// that computes the next models (see ModelProducer)
+	private volatile ISolver solver;
+	private final String configuration;
+	/**
+	 * The variables on which the models are blocked (computed when the first
+	 * model is found, i.e., when the literals map is complete)
+	 */
+	private int[] shownVariables = null;
+	private boolean unsatisfiable = false;
+	private volatile boolean closed = false;
+
+	private String dimacsFilePath;
+	private LiteralsTable literalsMap; // "table de correspondance"
+
+	private ModelList models;
+
+	/**
+	 * This is the main constructor used by the user after he translated the
+	 * touistl file to a DIMACS file (and the "literalsMap" associated).
+	 * @param dimacsFilePath the DIMACS file
+	 * @param literalsMap the "literals map" ("table de correspondance")
+	 */
+	public SolverSAT4J(String dimacsFilePath, Map<Integer, String> literalsMap) {
+		this(dimacsFilePath, literalsMap, null);
+	}
+
+	/**
+	 * Same as SolverSAT4J(dimacsFilePath, literalsMap) but with another
+	 * configuration than SolverFactory.newDefault() (see SolverPortfolio).
+	 * @param configuration the name of a SAT4J solver as given by
+	 * SolverFactory.instance().solverNames(), e.g. "Glucose21" or "BestWL";
+	 * null means "Default".
+	 */
+	public SolverSAT4J(String dimacsFilePath, Map<Integer, String> literalsMap,
+			String configuration) {
+		this.dimacsFilePath = dimacsFilePath;
+		this.literalsMap = LiteralsTable.of(literalsMap);
+		this.configuration = configuration;
+		this.solver = null;
+		models = new ModelList(this);
+	}
+
+	/**
+	 * This constructor is used when the clauses and the literals map are
+	 * streamed from the translator: give this instance as the DimacsListener
+	 * of TranslatorSAT.translate() and then call launch().
+	 */
+	public SolverSAT4J() {
+		this.dimacsFilePath = null;
+		this.literalsMap = new LiteralsTable();
+		this.configuration = null;
+		createSolver();
+		models = new ModelList(this);
+	}
+
+	private void createSolver() {
+		solver = configuration == null ? SolverFactory.newDefault()
+				: SolverFactory.instance().createSolverByName(configuration);
+		if (solver == null)
+			return; // unknown configuration, see launch()
+		solver.setTimeout(SOLVER_TIMEOUT);
+	}
+
+	@Override
+	public void problemLine(int nbVariables, int nbClauses) {
+		solver.newVar(nbVariables);
+		solver.setExpectedNumberOfClauses(nbClauses);
+	}
+
+	@Override
+	public void clause(int[] literals) {
+		if (unsatisfiable)
+			return;
+		try {
+			solver.addClause(new VecInt(literals));
+		} catch (ContradictionException e) {
+			// The problem is trivially unsatisfiable (e.g., empty clause)
+			unsatisfiable = true;
+		}
+	}
+
+	@Override
+	public void literal(int literalCode, String literalName) {
+		literalsMap.set(literalCode, literalName);
+	}
+
+	/**
+	 * Loads the DIMACS file into a new SAT4J solver. Nothing is solved yet:
+	 * the first model will be computed by ModelsIterator.hasNext().
+	 * If the clauses have been streamed from the translator, they are
+	 * already loaded and nothing is done.
+	 */
+	@Override
+	public void launch() throws IOException {
+		if (dimacsFilePath == null) // clauses already given by the translator
+			return;
+		createSolver();
+		if (solver == null)
+			throw new IOException("launch(): unknown SAT4J configuration '"+configuration+"'");
+		DimacsReader reader = new DimacsReader(solver);
+		System.out.println("launch(): loading '"+dimacsFilePath+"' into SAT4J");
+		try {
+			reader.parseInstance(dimacsFilePath);
+		} catch (FileNotFoundException e) {
+			throw e;
+		} catch (ParseFormatException e) {
+			throw new IOException("launch(): incorrect DIMACS content: "+e.getMessage());
+		} catch (ContradictionException e) {
+			// The problem is trivially unsatisfiable (e.g., empty clause)
+			unsatisfiable = true;
+		}
+	}
+
+	@Override
+	public ModelList getModelList() throws SolverExecutionException {
+		return models;
+	}
+
+	/**
+	 * Stops the solver; if a model is being computed in another thread, the
+	 * search is stopped as soon as possible.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		ISolver solver = this.solver;
+		if (solver != null)
+			solver.expireTimeout();
+		System.out.println("close(): solver has been closed correctly");
+	}
+
+	@Override
+	protected Model nextModel() throws IOException, SolverExecutionException {
+		if (solver == null) // Should not happen
+			throw new SolverExecutionException("nextModel(): exception: launch() has not been called");
+		if (unsatisfiable || closed)
+			return null;
+		try {
+			if (!solver.isSatisfiable()) {
+				unsatisfiable = true;
+				return null;
+			}
+		} catch (TimeoutException e) {
+			if (closed) // the timeout was caused by close()
+				return null;
+			throw new SolverExecutionException("nextModel(): exception: "
+					+ "the solver didn't find any model (timeout = "
+					+ Integer.toString(SOLVER_TIMEOUT) + "s)");
+		}
+		Model model = toModel(solver.model(), getLiteralsMap());
+		block();
+		return model;
+	}
+
+	/**
+	 * Adds the clause that forbids the current model on the shown variables.
+	 * Two models that only differ on '&' variables would be the same model
+	 * for the user.
+	 */
+	private void block() {
+		if (shownVariables == null) {
+			int count = 0;
+			shownVariables = new int[solver.nVars()];
+			for (int var = 1; var <= solver.nVars(); var++)
+				if (isShown(getLiteralsMap().name(var)))
+					shownVariables[count++] = var;
+			shownVariables = Arrays.copyOf(shownVariables, count);
+		}
+		int[] blocking = new int[shownVariables.length];
+		for (int i = 0; i < shownVariables.length; i++)
+			blocking[i] = solver.model(shownVariables[i]) ? -shownVariables[i] : shownVariables[i];
+		try {
+			if (blocking.length == 0) // the only model is the empty one
+				unsatisfiable = true;
+			else
+				solver.addClause(new VecInt(blocking));
+		} catch (ContradictionException e) {
+			// No other model
+			unsatisfiable = true;
+		}
+	}
+
+
+	/**
+	 * @return the name of the SAT4J configuration (null for the default one)
+	 */
+	public String getConfiguration() {
+		return configuration;
+	}
+
+	/**
+	 * @return the DIMACS file path
+	 */
+	protected String getDimacsFilePath() {
+		return dimacsFilePath;
+	}
+
+	/**
+	 * @return the literalsMap (DIMACS integer to string names)
+	 */
+	protected LiteralsTable getLiteralsMap() {
+		return literalsMap;
+	}
+}
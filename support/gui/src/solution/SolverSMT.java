@@ -174,7 +174,6 @@ public class SolverSMT extends Solver {
         throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
     }
 
-    @Override
     protected Model parseModel(String[] rawModelOutput) {
         throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
     }
@@ -23,22 +23,25 @@
 
 package solution;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeoutException;
 
-import entity.Literal;
 import entity.Model;
+import touist.ProcessEvent;
 import touist.TouIST;
+import translation.LiteralsTable;
 
 /**
  * This class is a first implementation of the "Solver" abstract class. It
@@ -51,14 +54,27 @@ import touist.TouIST;
 public class SolverTestSAT4J extends Solver {
 	private Process p;
 	private PrintWriter stdin;
-	private BufferedReader stderr;
-	private BufferedReader stdout;
+	private ProcessOutputReader stderr;
+	private ProcessOutputReader stdout;
+	/**
+	 * Set by close(), which may be called by another thread while launch()
+	 * is still running (see SolverPortfolio): the process is then not
+	 * started, or destroyed as soon as it is
+	 */
+	private volatile boolean closed = false;
 
 	private String dimacsFilePath;
-	private Map<Integer, String> literalsMap; // "table de correspondance"
+	private LiteralsTable literalsMap; // "table de correspondance"
 
 	private ModelList models;
 
+	/**
+	 * Number of models that have been asked to minisat.jar but not read yet
+	 */
+	private long modelsAsked = 0;
+	private boolean streamAll = false;
+	private long streamLimit = 0;
+
 	/**
 	 * This is the main constructor used by the user after he translated the
 	 * BIGAND file to a DIMACS file (and the "literalsMap" associated).
@@ -68,7 +84,7 @@ public class SolverTestSAT4J extends Solver {
 	public SolverTestSAT4J(String dimacsFilePath,
 			Map<Integer, String> literalsMap) {
 		this.dimacsFilePath = dimacsFilePath;
-		this.literalsMap = literalsMap;
+		this.literalsMap = LiteralsTable.of(literalsMap);
 		this.p = null;
 		this.stdin = null;
 		models = new ModelList(this);
@@ -82,24 +98,12 @@ public class SolverTestSAT4J extends Solver {
 	 * @param dimacsFilePath
 	 */
 	public SolverTestSAT4J() {
-		this.literalsMap = null;
+		this.literalsMap = new LiteralsTable();
 		this.p = null;
 		this.stdin = null;
 		models = new ModelList(this);
 	}
 
-    /**
-     * For java jre 1.6 and 1.7 compatibility (p.isAlive() is java jre >= 1.8)
-     */
-	private boolean isAlive(Process process) {
-	    try {
-	        process.exitValue();
-	        return false;
-	    } catch (Exception e) {
-	        return true;
-	    }
-	}
-	
 	@Override
 	public void launch() throws IOException {
 		// TODO We should be able to re-use the Solver instance
@@ -113,15 +117,55 @@ public class SolverTestSAT4J extends Solver {
 		 * 5 = solver timeout
 		 */
 
+		if (closed)
+			throw new IOException("launch(): the solver has been closed");
 		String pathminisat = TouIST.getTouistExternalDir() + File.separator + "minisat.jar";
 
-		String [] command = { "java", "-jar",pathminisat, this.dimacsFilePath} ;
+		String [] command = { "java", "-jar",pathminisat, this.dimacsFilePath,
+				Long.toString(streamLimit), writeHiddenVariables()} ;
 		System.out.println("launch(): cmd executed: "+Arrays.toString(command));
-		this.p = Runtime.getRuntime().exec(command);
-		stderr = new BufferedReader(new InputStreamReader(p.getErrorStream()));
-		stdout = new BufferedReader(new InputStreamReader(p.getInputStream()));
-		stdin = new PrintWriter(new BufferedWriter(new OutputStreamWriter(
-				p.getOutputStream())));
+		// The event ends when minisat.jar exits (see ProcessOutputReader)
+		ProcessEvent event = ProcessEvent.begin(Arrays.asList(command));
+		event.setInputSize(new File(this.dimacsFilePath).length());
+		Process process = Runtime.getRuntime().exec(command);
+		synchronized (this) {
+			if (closed) { // close() has been called during exec()
+				process.destroy();
+				throw new IOException("launch(): the solver has been closed");
+			}
+			this.p = process;
+			stderr = new ProcessOutputReader(p.getErrorStream(), null, "minisat stderr", event).start();
+			stdout = new ProcessOutputReader(p.getInputStream(), p, "minisat stdout", event).start();
+			stdin = new PrintWriter(new BufferedWriter(new OutputStreamWriter(
+					p.getOutputStream())));
+		}
+		if (streamAll) {
+			stdin.println("*"); // asks for every model
+			stdin.flush();
+			modelsAsked = Long.MAX_VALUE;
+		}
+	}
+
+	/**
+	 * Writes the variables that are not shown to the user ('&') next to the
+	 * DIMACS file so that minisat.jar blocks each model on the other ones
+	 * only: every model it gives is then new to the user.
+	 * @return the path of the file
+	 */
+	private String writeHiddenVariables() throws IOException {
+		String path = dimacsFilePath + ".hidden";
+		PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(path)));
+		try {
+			for (int var = 1; var <= literalsMap.capacity(); var++) {
+				String name = literalsMap.name(var);
+				if (name != null && !isShown(name))
+					writer.println(var);
+			}
+		} finally {
+			writer.close();
+		}
+		new File(path).deleteOnExit();
+		return path;
 	}
 
 	@Override
@@ -130,7 +174,12 @@ public class SolverTestSAT4J extends Solver {
 	}
 
 	@Override
-	public void close() {
+	public synchronized void close() {
+		if (closed)
+			return;
+		closed = true;
+		if (p == null) // not launched (yet)
+			return;
 		stdin.println("\n0");
 		stdin.close();
 		this.p.destroy();
@@ -139,60 +188,103 @@ public class SolverTestSAT4J extends Solver {
 
 	@Override
 	protected Model nextModel() throws IOException, SolverExecutionException {
+		List<Model> next = nextModels(1);
+		return next.isEmpty() ? null : next.get(0);
+	}
+
+	/**
+	 * Asks minisat.jar for 'count' models in a single request (instead of
+	 * one request per model) and waits for the first one only: the next
+	 * ones are read in background and will be given by the next calls.
+	 * A new request is only sent when every model that has been asked before
+	 * has been read.
+	 */
+	@Override
+	protected List<Model> nextModels(int count) throws IOException, SolverExecutionException {
 		final int WAIT_FOR_MODEL_TIMEOUT = 5000000; // ms
 		if (p == null) // Should not happen
 			throw new SolverExecutionException("nextModel(): exception: launch() has not been called");
-		if (!isAlive(p)) { // The solver is already done
-			return null;
-		}
-		String[] rawLiterals;
-		Model modelParsed = null;
-		stdin.println("1"); // tells the solver to give the next model 
-		stdin.flush();
-		// We wait for any output from the solver unless we get a timeout
-		final long timeout = System.currentTimeMillis() + WAIT_FOR_MODEL_TIMEOUT;
-		while(!stdout.ready() && isAlive(p) && System.currentTimeMillis() < timeout){
-			// Active waiting (I know, it is a bad way to do it!)
-			try {
-				synchronized (this) { // for JavaRE6 compliance
-					this.wait(10);
-				}
-			} catch (InterruptedException e) {
-				// TODO I added this wait to avoid active complete waiting
-				e.printStackTrace();
+		List<Model> next = new ArrayList<Model>();
+		if (modelsAsked == 0) {
+			if (stdout.hasExited()) { // The solver is already done
+				return next;
 			}
+			stdin.println(Integer.toString(count)); // asks the 'count' next models
+			stdin.flush();
+			modelsAsked = count;
 		}
-		// Case 1 : we got some text to read from stdout
-		if(stdout.ready()) {
-			rawLiterals = stdout.readLine().split(" ");
-			modelParsed = parseModel(rawLiterals);
-		}
-		// Case 2 : no text but solver still running
-		if(!stdout.ready() && System.currentTimeMillis() >= timeout) { // Nothing has been read
+		// We block until the solver gives a model or exits (no more models)
+		String line;
+		try {
+			line = stdout.nextLine(WAIT_FOR_MODEL_TIMEOUT);
+		} catch (TimeoutException e) {
 			throw new SolverExecutionException("nextModel(): exception: "
 					+ "the solver didn't give any output (timeout = "
 					+Integer.toString(WAIT_FOR_MODEL_TIMEOUT)+"ms)");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SolverExecutionException("nextModel(): interrupted while "
+					+ "waiting for the solver");
+		}
+		// Then we take the models that have already been read, without waiting
+		while (line != null) {
+			next.add(parseModel(line.split(" ")));
+			modelsAsked--;
+			if (next.size() == count || modelsAsked == 0)
+				break;
+			line = stdout.pollLine();
+		}
+		if (next.isEmpty()) { // The solver exited: no more models
+			modelsAsked = 0;
+			try {
+				stderr.waitForExit(1000); // stderr may not have been read yet
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			String errors = stderr.drain();
+			if (!errors.isEmpty())
+				System.out.print("nextModel(): solver says: "+errors);
+			// minisat.jar exits with 1 only when the problem is unsatisfiable
+			// (see the return values in launch())
+			int exitValue = stdout.exitValue();
+			if (exitValue > 1 || (exitValue == 1 && !errors.contains("Unsatisfiable")))
+				throw new SolverExecutionException("nextModel(): exception: "
+						+ "the solver failed (return code "+exitValue+"): "+errors);
 		}
-		return modelParsed;
+		return next;
 	}
 
-	@Override
+	/**
+	 * Instead of asking the models by batches, minisat.jar will give every
+	 * model (up to 'limit') without waiting for requests; the models are
+	 * read in background as soon as they are given. Must be called before
+	 * launch().
+	 * @param limit the maximum number of models (0 means no limit)
+	 */
+	public void setStreamAll(long limit) {
+		this.streamAll = true;
+		this.streamLimit = limit;
+	}
+
+	/**
+	 * @param rawModelOutput a model as printed by minisat.jar ("1 -2 3 0")
+	 * @return a model with the translated literals
+	 */
 	protected Model parseModel(String[] rawModelOutput) {
 		// TODO The parser should be able to handle the "-3" (negation)
-		Model model = new Model();
+		Model model = new Model(getSymbols(), rawModelOutput.length);
 		for (String rawLiteral : rawModelOutput) {
 			int literalInt = Integer.parseInt(rawLiteral);
 			if (literalInt != 0) { // '0' means 'end of model'
 				int literalCode = (literalInt > 0 ? literalInt : literalInt * (-1));
-				String literalString = getLiteralsMap().get(literalCode);
+				String literalString = getLiteralsMap().name(literalCode);
 				if (literalString != null) {
 					// Added for filtering '&45' literals (issue #88)
 					if(literalString.charAt(0) != '&') {
-						model.addLiteral(new Literal(getLiteralsMap().get(
-								literalCode), literalInt > 0));
+						model.add(literalString, literalInt > 0);
 					}
 				} else {
-					model.addLiteral(new Literal(rawLiteral, literalInt > 0));
+					model.add(rawLiteral, literalInt > 0);
 				}
 			}
 		}
@@ -211,7 +303,7 @@ public class SolverTestSAT4J extends Solver {
 	 * ONLY used by Models
 	 * @return the literalsMap (DIMACS integer to string names)
 	 */
-	protected Map<Integer, String> getLiteralsMap() {
+	protected LiteralsTable getLiteralsMap() {
 		return literalsMap;
 	}
 }
@@ -0,0 +1,265 @@
+/*
+ *
+ * Project TouIST, 2015. Easily formalize and solve real-world sized problems
+ * using propositional logic and linear theory of reals with a nice GUI.
+ *
+ * https://github.com/touist/touist
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl-2.1.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     Alexis Comte, Abdelwahab Heba, Olivier Lezaud,
+ *     Skander Ben Slimane, Maël Valais
+ *
+ */
+
+package touist;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import entity.Model;
+import solution.SolverExecutionException;
+import solution.SolverSAT4J;
+import translation.TranslationError;
+import translation.TranslatorSAT;
+
+/**
+ * Translates and solves many SAT problems without the GUI:
+ *
+ *     java -cp touist.jar touist.Batch [-j threads] [-limit models]
+ *                                      [-o results.tsv] dir|glob|file...
+ *
+ * A directory gives all the .touistl files under it; a glob (e.g.
+ * 'tests/sat-*.touistl', quoted so that the shell does not expand it) gives
+ * the files that match it. The problems are solved on a pool of 'threads'
+ * threads (one per core by default), each one in its own Workspace.
+ *
+ * One line (tab-separated) is written per file, in the order the problems
+ * are done: the file, the status (SAT, UNSAT, TRANSLATION_ERROR or ERROR),
+ * the number of models (counted up to 'models', 1000 by default, with a '+'
+ * if there were more), the translation time, the time for the first model
+ * and the time for the other models (in ms), and the first error if any.
+ * The exit code is 1 if a problem could not be translated or solved.
+ *
+ * @author Maël
+ */
+public class Batch {
+	private static final String USAGE = "Usage: java -cp touist.jar touist.Batch "
+			+ "[-j threads] [-limit models] [-o results.tsv] dir|glob|file...";
+
+	private final int limit;
+	private final PrintWriter out;
+	private volatile boolean failed = false;
+
+	public Batch(int limit, PrintWriter out) {
+		this.limit = limit;
+		this.out = out;
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int threads = Runtime.getRuntime().availableProcessors();
+		int limit = 1000;
+		String output = null;
+		List<String> inputs = new ArrayList<String>();
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if (args[i].equals("-j"))
+					threads = Integer.parseInt(args[++i]);
+				else if (args[i].equals("-limit"))
+					limit = Integer.parseInt(args[++i]);
+				else if (args[i].equals("-o"))
+					output = args[++i];
+				else
+					inputs.add(args[i]);
+			}
+		} catch (RuntimeException e) { // missing or wrong number
+			inputs.clear();
+		}
+		if (inputs.isEmpty() || threads < 1 || limit < 1) {
+			System.err.println(USAGE);
+			System.exit(2);
+		}
+		List<Path> files = new ArrayList<Path>();
+		for (String input : inputs)
+			files.addAll(find(input));
+		if (files.isEmpty()) {
+			System.err.println("main(): no .touistl file found");
+			System.exit(2);
+		}
+
+		// The solvers and the translators print a lot on stdout: when the
+		// results go to stdout, the rest goes to stderr
+		PrintStream stdout = System.out;
+		PrintWriter out;
+		if (output == null) {
+			out = new PrintWriter(new OutputStreamWriter(stdout, "UTF-8"));
+			System.setOut(System.err);
+		} else {
+			out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(output), "UTF-8"));
+		}
+		out.println("file\tstatus\tmodels\ttranslation_ms\tfirst_model_ms\tother_models_ms\terror");
+		Batch batch = new Batch(limit, out);
+		batch.run(files, threads);
+		out.close();
+		System.exit(batch.failed ? 1 : 0);
+	}
+
+	/**
+	 * Solves the files on 'threads' threads and returns when all are done.
+	 */
+	public void run(List<Path> files, int threads) throws InterruptedException {
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		for (final Path file : files) {
+			pool.execute(new Runnable() {
+				@Override
+				public void run() {
+					String record = solve(file);
+					synchronized (out) {
+						out.println(record);
+						out.flush();
+					}
+				}
+			});
+		}
+		pool.shutdown();
+		pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @return the result line of this file
+	 */
+	private String solve(Path file) {
+		String status;
+		String models = "";
+		long translation = 0, firstModel = 0, otherModels = 0;
+		String error = "";
+		Workspace workspace = null;
+		SolverSAT4J solver = null;
+		try {
+			workspace = Workspace.create("batch");
+			TranslatorSAT translator = new TranslatorSAT(new ArrayList<String>(), workspace);
+			long start = System.nanoTime();
+			boolean ok = translator.translate(file.toString());
+			translation = System.nanoTime() - start;
+			if (!ok) {
+				status = "TRANSLATION_ERROR";
+				List<TranslationError> errors = translator.getErrors();
+				if (!errors.isEmpty())
+					error = errors.get(0).toString();
+			} else {
+				start = System.nanoTime();
+				solver = new SolverSAT4J(translator.getDimacsFilePath(), translator.getLiteralsMap());
+				solver.launch();
+				// The models are timed on this thread: none is computed in advance
+				solver.getModelList().setPrefetch(0);
+				Iterator<Model> iter = solver.getModelList().iterator();
+				boolean sat = iter.hasNext();
+				firstModel = System.nanoTime() - start;
+				start = System.nanoTime();
+				int count = 0;
+				while (count < limit && iter.hasNext()) {
+					iter.next();
+					count++;
+				}
+				boolean more = count == limit && iter.hasNext();
+				otherModels = System.nanoTime() - start;
+				// hasNext() is false too when the solver has failed (e.g. a
+				// timeout): that is not UNSAT nor the end of the models
+				SolverExecutionException solverError = solver.getModelList().getError();
+				if (solverError != null)
+					throw solverError;
+				status = sat ? "SAT" : "UNSAT";
+				models = count + (more ? "+" : "");
+			}
+		} catch (Exception e) {
+			status = "ERROR";
+			error = e.toString();
+		} finally {
+			if (solver != null)
+				solver.close();
+			if (workspace != null)
+				workspace.close();
+		}
+		if (!status.equals("SAT") && !status.equals("UNSAT"))
+			failed = true;
+		return file + "\t" + status + "\t" + models + "\t" + TimeUnit.NANOSECONDS.toMillis(translation)
+				+ "\t" + TimeUnit.NANOSECONDS.toMillis(firstModel) + "\t"
+				+ TimeUnit.NANOSECONDS.toMillis(otherModels) + "\t" + error.replaceAll("\\s+", " ");
+	}
+
+	/**
+	 * @param input a directory, a glob or a file
+	 * @return the .touistl files under the directory, the files matching the
+	 * glob or the file itself
+	 */
+	static List<Path> find(String input) throws IOException {
+		final List<Path> found = new ArrayList<Path>();
+		final PathMatcher matcher;
+		Path root;
+		int glob = indexOfGlob(input);
+		if (glob == -1) {
+			root = Paths.get(input);
+			if (!Files.isDirectory(root)) {
+				if (Files.isRegularFile(root))
+					found.add(root);
+				else
+					System.err.println("find(): '" + input + "' does not exist");
+				return found;
+			}
+			matcher = FileSystems.getDefault().getPathMatcher("glob:**.touistl");
+		} else {
+			// The directory where the glob begins, e.g. 'tests' for 'tests/sat-*.touistl'
+			int sep = input.lastIndexOf(File.separatorChar, glob);
+			if (File.separatorChar != '/')
+				sep = Math.max(sep, input.lastIndexOf('/', glob));
+			root = Paths.get(sep == -1 ? "." : sep == 0 ? input.substring(0, 1) : input.substring(0, sep));
+			matcher = FileSystems.getDefault().getPathMatcher("glob:" + input.substring(sep + 1));
+		}
+		final Path base = root;
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+				if (attrs.isRegularFile() && matcher.matches(base.relativize(file)))
+					found.add(file);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		Collections.sort(found);
+		return found;
+	}
+
+	private static int indexOfGlob(String input) {
+		for (int i = 0; i < input.length(); i++)
+			if ("*?[{".indexOf(input.charAt(i)) != -1)
+				return i;
+		return -1;
+	}
+}
@@ -0,0 +1,60 @@
+/*
+ *
+ * Project TouIST, 2015. Easily formalize and solve real-world sized problems
+ * using propositional logic and linear theory of reals with a nice GUI.
+ *
+ * https://github.com/touist/touist
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl-2.1.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     Alexis Comte, Abdelwahab Heba, Olivier Lezaud,
+ *     Skander Ben Slimane, Maël Valais
+ *
+ */
+
+package touist;
+
+import java.io.IOException;
+import java.math.BigInteger;
+
+import solution.ModelCounter;
+import translation.TranslationError;
+import translation.TranslatorSAT;
+
+/**
+ * Counts the models of a SAT problem without the GUI:
+ *
+ *     java -cp touist.jar touist.CountModels problem.touistl
+ *
+ * The last line printed on stdout is the number of models (see
+ * ModelCounter); the exit code is 1 if the translation failed.
+ *
+ * @author Maël
+ */
+public class CountModels {
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length != 1) {
+			System.err.println("Usage: java -cp touist.jar touist.CountModels problem.touistl");
+			System.exit(2);
+		}
+		TranslatorSAT translator = new TranslatorSAT();
+		ModelCounter counter = new ModelCounter();
+		if (!translator.translate(args[0], counter)) {
+			for (TranslationError error : translator.getErrors()) {
+				System.err.println(error);
+			}
+			System.exit(1);
+		}
+		BigInteger count = counter.count();
+		System.out.println(count);
+	}
+}
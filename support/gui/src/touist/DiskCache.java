@@ -0,0 +1,172 @@
+/*
+ *
+ * Project TouIST, 2015. Easily formalize and solve real-world sized problems
+ * using propositional logic and linear theory of reals with a nice GUI.
+ *
+ * https://github.com/touist/touist
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl-2.1.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     Alexis Comte, Abdelwahab Heba, Olivier Lezaud,
+ *     Skander Ben Slimane, Maël Valais
+ *
+ */
+
+package touist;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * A persistent cache: each entry is a file of a directory, named after its
+ * key. When the total size of the entries exceeds the maximum size, the
+ * least recently used entries are removed (the last modification date of a
+ * file is updated each time the entry is read).
+ *
+ * Entries are written into a temporary file which is then renamed so that an
+ * entry is never read half-written (e.g., by another TouIST running at the
+ * same time).
+ *
+ * @author Maël
+ */
+public class DiskCache {
+	private static final String EXTENSION = ".entry";
+
+	private final File directory;
+	private final long maxSize;
+
+	/**
+	 * @param directory where the entries are stored; it is created if needed
+	 * @param maxSize the maximum total size of the entries, in bytes
+	 */
+	public DiskCache(String directory, long maxSize) {
+		this.directory = new File(directory);
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * @return the content of the entry, or null if there is no entry for
+	 * this key (or if it could not be read)
+	 */
+	public synchronized byte[] get(String key) {
+		File entry = fileOf(key);
+		if (!entry.isFile())
+			return null;
+		try {
+			byte[] content = Files.readAllBytes(entry.toPath());
+			entry.setLastModified(System.currentTimeMillis());
+			return content;
+		} catch (IOException e) {
+			System.err.println("get(): could not read the cache entry '" + entry + "': " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Adds or replaces an entry and removes the least recently used entries
+	 * if the cache is too big. Nothing is done if the entry cannot be written
+	 * (the cache is only an optimization).
+	 */
+	public synchronized void put(String key, byte[] content) {
+		if (content.length > maxSize)
+			return;
+		File temp = null;
+		try {
+			if (!directory.isDirectory())
+				Files.createDirectories(directory.toPath());
+			temp = File.createTempFile("entry", ".tmp", directory);
+			Files.write(temp.toPath(), content);
+			Files.move(temp.toPath(), fileOf(key).toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			System.err.println("put(): could not write the cache entry '" + key + "': " + e.getMessage());
+			if (temp != null)
+				temp.delete();
+			return;
+		}
+		evict();
+	}
+
+	/**
+	 * Removes an entry (e.g., if its content is not valid anymore).
+	 */
+	public synchronized void remove(String key) {
+		fileOf(key).delete();
+	}
+
+	/**
+	 * Removes the least recently used entries until the total size is
+	 * under the maximum size.
+	 */
+	private void evict() {
+		File[] entries = directory.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.endsWith(EXTENSION);
+			}
+		});
+		if (entries == null)
+			return;
+		long size = 0;
+		for (File entry : entries)
+			size += entry.length();
+		if (size <= maxSize)
+			return;
+		Arrays.sort(entries, new Comparator<File>() {
+			@Override
+			public int compare(File a, File b) {
+				return Long.compare(a.lastModified(), b.lastModified());
+			}
+		});
+		for (int i = 0; i < entries.length && size > maxSize; i++) {
+			long length = entries[i].length();
+			if (entries[i].delete())
+				size -= length;
+		}
+	}
+
+	private File fileOf(String key) {
+		return new File(directory, key + EXTENSION);
+	}
+
+	/**
+	 * @return the hexadecimal SHA-256 of the bytes, used for making keys
+	 */
+	public static String hash(byte[] bytes) {
+		return toHex(newDigest().digest(bytes));
+	}
+
+	/**
+	 * @return a new SHA-256 MessageDigest
+	 */
+	public static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is always available", e);
+		}
+	}
+
+	public static String toHex(byte[] bytes) {
+		StringBuilder sb = new StringBuilder();
+		for (byte b : bytes)
+			sb.append(String.format("%02x", b));
+		return sb.toString();
+	}
+}
@@ -0,0 +1,268 @@
+/*
+ *
+ * Project TouIST, 2015. Easily formalize and solve real-world sized problems
+ * using propositional logic and linear theory of reals with a nice GUI.
+ *
+ * https://github.com/touist/touist
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl-2.1.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     Alexis Comte, Abdelwahab Heba, Olivier Lezaud,
+ *     Skander Ben Slimane, Maël Valais
+ *
+ */
+
+package touist;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Timers and counters of what a Solve does (saving the source, running
+ * touist, parsing the table, launching the solver, getting the models...),
+ * so that one can tell whether a slow Solve is slow in touist, in the solver
+ * or in the GUI.
+ *
+ * Every timer and counter is published as a JMX MBean
+ * (touist:type=Timer,name=... and touist:type=Counter,name=..., e.g. in
+ * jconsole) and touist:type=Summary gives a text summary of all of them.
+ * With -Dtouist.metricsInterval=60, the summary is also printed every 60
+ * seconds.
+ *
+ * The percentiles are computed on the last WINDOW samples of each timer.
+ *
+ *     long start = System.nanoTime();
+ *     ...
+ *     Metrics.timer(Metrics.TRANSLATION).since(start);
+ *
+ * @author Maël
+ */
+public class Metrics {
+	public static final String SOURCE_SAVE = "source.save";
+	public static final String TRANSLATION = "translation";
+	public static final String TABLE_PARSING = "table.parsing";
+	public static final String SOLVER_LAUNCH = "solver.launch";
+	public static final String FIRST_MODEL = "solver.firstModel";
+	public static final String MODEL = "solver.model";
+	public static final String LATEX_RENDERING = "latex.rendering";
+	public static final String LINT = "lint";
+
+	public static final String CLAUSES = "clauses";
+	public static final String VARIABLES = "variables";
+	public static final String MODELS = "models";
+
+	/**
+	 * Number of samples kept by each timer for the percentiles
+	 */
+	public static final int WINDOW = 256;
+
+	public interface TimerMXBean {
+		long getCount();
+		double getTotalMillis();
+		double getMeanMillis();
+		double getLastMillis();
+		double getMaxMillis();
+		double getP50Millis();
+		double getP90Millis();
+		double getP99Millis();
+		void reset();
+	}
+
+	public interface CounterMXBean {
+		/**
+		 * @return the sum of all the values added
+		 */
+		long getTotal();
+		/**
+		 * @return the last value added (e.g. the clauses of the last problem)
+		 */
+		long getLast();
+		long getUpdates();
+		void reset();
+	}
+
+	public interface SummaryMXBean {
+		String getSummary();
+	}
+
+	public static class Timer implements TimerMXBean {
+		private final double[] window = new double[WINDOW];
+		private long count = 0;
+		private double total = 0;
+		private double last = 0;
+		private double max = 0;
+
+		/**
+		 * Records the time elapsed since start (a System.nanoTime())
+		 */
+		public void since(long start) {
+			record((System.nanoTime() - start) / 1e6);
+		}
+
+		public synchronized void record(double millis) {
+			window[(int) (count % WINDOW)] = millis;
+			count++;
+			total += millis;
+			last = millis;
+			max = Math.max(max, millis);
+		}
+
+		@Override public synchronized long getCount() { return count; }
+		@Override public synchronized double getTotalMillis() { return total; }
+		@Override public synchronized double getMeanMillis() { return count == 0 ? 0 : total / count; }
+		@Override public synchronized double getLastMillis() { return last; }
+		@Override public synchronized double getMaxMillis() { return max; }
+		@Override public double getP50Millis() { return percentile(50); }
+		@Override public double getP90Millis() { return percentile(90); }
+		@Override public double getP99Millis() { return percentile(99); }
+
+		@Override
+		public synchronized void reset() {
+			count = 0;
+			total = last = max = 0;
+		}
+
+		private synchronized double percentile(int p) {
+			int n = (int) Math.min(count, WINDOW);
+			if (n == 0)
+				return 0;
+			double[] sorted = Arrays.copyOf(window, n);
+			Arrays.sort(sorted);
+			return sorted[Math.max(0, (int) Math.ceil(p / 100.0 * n) - 1)];
+		}
+
+		synchronized String summary() {
+			return String.format(Locale.ROOT, "%d, p50 %.1f ms, p90 %.1f ms, max %.1f ms, total %.1f ms",
+					count, percentile(50), percentile(90), max, total);
+		}
+	}
+
+	public static class Counter implements CounterMXBean {
+		private final AtomicLong total = new AtomicLong();
+		private final AtomicLong last = new AtomicLong();
+		private final AtomicLong updates = new AtomicLong();
+
+		public void add(long value) {
+			total.addAndGet(value);
+			last.set(value);
+			updates.incrementAndGet();
+		}
+
+		@Override public long getTotal() { return total.get(); }
+		@Override public long getLast() { return last.get(); }
+		@Override public long getUpdates() { return updates.get(); }
+
+		@Override
+		public void reset() {
+			total.set(0);
+			last.set(0);
+			updates.set(0);
+		}
+
+		String summary() {
+			return "total " + total.get() + ", last " + last.get();
+		}
+	}
+
+	private static final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<String, Timer>();
+	private static final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<String, Counter>();
+
+	static {
+		register("touist:type=Summary", new SummaryMXBean() {
+			@Override
+			public String getSummary() {
+				return summary();
+			}
+		});
+		final long interval = Long.getLong("touist.metricsInterval", 0);
+		if (interval > 0) {
+			Thread printer = new Thread("metrics-summary") {
+				@Override
+				public void run() {
+					try {
+						while (true) {
+							Thread.sleep(interval * 1000);
+							System.out.println(summary());
+						}
+					} catch (InterruptedException e) {
+						// the JVM exits
+					}
+				}
+			};
+			printer.setDaemon(true);
+			printer.start();
+		}
+	}
+
+	/**
+	 * @return the timer with this name (created and published the first time)
+	 */
+	public static Timer timer(String name) {
+		Timer timer = timers.get(name);
+		if (timer == null) {
+			Timer created = new Timer();
+			timer = timers.putIfAbsent(name, created);
+			if (timer == null) {
+				timer = created;
+				register("touist:type=Timer,name=" + name, timer);
+			}
+		}
+		return timer;
+	}
+
+	/**
+	 * @return the counter with this name (created and published the first
+	 * time)
+	 */
+	public static Counter counter(String name) {
+		Counter counter = counters.get(name);
+		if (counter == null) {
+			Counter created = new Counter();
+			counter = counters.putIfAbsent(name, created);
+			if (counter == null) {
+				counter = created;
+				register("touist:type=Counter,name=" + name, counter);
+			}
+		}
+		return counter;
+	}
+
+	/**
+	 * @return one line per timer and counter
+	 */
+	public static String summary() {
+		StringBuilder sb = new StringBuilder("summary(): TouIST metrics\n");
+		for (Map.Entry<String, Timer> timer : new TreeMap<String, Timer>(timers).entrySet())
+			sb.append("  ").append(timer.getKey()).append(": ").append(timer.getValue().summary()).append('\n');
+		for (Map.Entry<String, Counter> counter : new TreeMap<String, Counter>(counters).entrySet())
+			sb.append("  ").append(counter.getKey()).append(": ").append(counter.getValue().summary()).append('\n');
+		return sb.toString();
+	}
+
+	private static void register(String name, Object mbean) {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(mbean, new ObjectName(name));
+		} catch (JMException e) {
+			// e.g. no JMX on this platform: the metrics are still in summary()
+			System.err.println("register(): could not publish '" + name + "': " + e.getMessage());
+		}
+	}
+}
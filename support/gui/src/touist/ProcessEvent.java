@@ -0,0 +1,248 @@
+/*
+ *
+ * Project TouIST, 2015. Easily formalize and solve real-world sized problems
+ * using propositional logic and linear theory of reals with a nice GUI.
+ *
+ * https://github.com/touist/touist
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl-2.1.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     Alexis Comte, Abdelwahab Heba, Olivier Lezaud,
+ *     Skander Ben Slimane, Maël Valais
+ *
+ */
+
+package touist;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A JDK Flight Recorder event ("touist.Process", in the TouIST category) for
+ * each run of an external program (touist, minisat.jar...): its command, the
+ * size of its input, its exit code, the bytes read from its output and how
+ * long it ran. In a recording (e.g. java -XX:StartFlightRecording), the
+ * waits for touist and the solvers are then on the same timeline as the
+ * stalls of the Swing thread and the GCs.
+ *
+ *     ProcessEvent event = ProcessEvent.begin(cmd);
+ *     Process p = Runtime.getRuntime().exec(...);
+ *     event.setInputSize(ProcessEvent.utf8Length(source));
+ *     InputStream out = event.count(p.getInputStream());
+ *     ...
+ *     event.end(p.waitFor());
+ *
+ * TouIST is built for Java 7, so the event type is created with
+ * jdk.jfr.EventFactory through reflection; on a JRE without JFR events
+ * (before Java 11, or 8u262), the events do nothing.
+ *
+ * @author Maël
+ */
+public class ProcessEvent {
+	private static final Object factory;
+	private static final Method newEvent;
+	private static final Method begin;
+	private static final Method end;
+	private static final Method set;
+	private static final Method commit;
+
+	static {
+		Object f = null;
+		Method n = null, b = null, e = null, s = null, c = null;
+		try {
+			Class<?> eventFactory = Class.forName("jdk.jfr.EventFactory");
+			Class<?> event = Class.forName("jdk.jfr.Event");
+			Constructor<?> annotation = Class.forName("jdk.jfr.AnnotationElement")
+					.getConstructor(Class.class, Object.class);
+			Constructor<?> field = Class.forName("jdk.jfr.ValueDescriptor")
+					.getConstructor(Class.class, String.class, List.class);
+			Class<?> name = Class.forName("jdk.jfr.Name");
+			Class<?> label = Class.forName("jdk.jfr.Label");
+			Class<?> dataAmount = Class.forName("jdk.jfr.DataAmount");
+
+			List<Object> type = new ArrayList<Object>();
+			type.add(annotation.newInstance(name, "touist.Process"));
+			type.add(annotation.newInstance(label, "External Process"));
+			type.add(annotation.newInstance(Class.forName("jdk.jfr.Category"), new String[] {"TouIST"}));
+			type.add(annotation.newInstance(Class.forName("jdk.jfr.Description"),
+					"A run of touist or of an external solver"));
+			// The order of the fields is the index given to Event.set()
+			List<Object> fields = new ArrayList<Object>();
+			fields.add(field.newInstance(String.class, "command",
+					Arrays.asList(annotation.newInstance(label, "Command"))));
+			fields.add(field.newInstance(long.class, "inputSize", Arrays.asList(
+					annotation.newInstance(label, "Input Size"), annotation.newInstance(dataAmount, "BYTES"))));
+			fields.add(field.newInstance(int.class, "exitCode",
+					Arrays.asList(annotation.newInstance(label, "Exit Code"))));
+			fields.add(field.newInstance(long.class, "bytesRead", Arrays.asList(
+					annotation.newInstance(label, "Bytes Read"), annotation.newInstance(dataAmount, "BYTES"))));
+
+			f = eventFactory.getMethod("create", List.class, List.class).invoke(null, type, fields);
+			n = eventFactory.getMethod("newEvent");
+			b = event.getMethod("begin");
+			e = event.getMethod("end");
+			s = event.getMethod("set", int.class, Object.class);
+			c = event.getMethod("commit");
+		} catch (ClassNotFoundException ex) {
+			f = null; // no JFR events in this JRE
+		} catch (Exception ex) {
+			System.err.println("ProcessEvent: the JFR events are disabled: " + ex);
+			f = null;
+		}
+		factory = f;
+		newEvent = n;
+		begin = b;
+		end = e;
+		set = s;
+		commit = c;
+	}
+
+	private final Object event;
+	private final String command;
+	private final AtomicLong bytesRead = new AtomicLong();
+	private volatile long inputSize = 0;
+	private Integer exitCode = null; // set by end()
+	private int readers = 0; // the streams still read (see addReader())
+	private boolean ended = false;
+
+	private ProcessEvent(Object event, String command) {
+		this.event = event;
+		this.command = command;
+	}
+
+	/**
+	 * To be called just before the program is started.
+	 * @param command the program and its arguments
+	 */
+	public static ProcessEvent begin(List<String> command) {
+		Object event = null;
+		if (factory != null) {
+			try {
+				event = newEvent.invoke(factory);
+				begin.invoke(event);
+			} catch (Exception e) {
+				event = null;
+			}
+		}
+		return new ProcessEvent(event, command.toString());
+	}
+
+	/**
+	 * @param size the number of bytes given to the program (on its stdin or
+	 * in its input file)
+	 */
+	public void setInputSize(long size) {
+		inputSize = size;
+	}
+
+	/**
+	 * @return the number of bytes of the text encoded in UTF-8 (without
+	 * encoding it)
+	 */
+	public static long utf8Length(CharSequence text) {
+		long length = 0;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c < 0x80)
+				length++;
+			else if (c < 0x800)
+				length += 2;
+			else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+					&& Character.isLowSurrogate(text.charAt(i + 1))) {
+				length += 4;
+				i++;
+			} else if (Character.isSurrogate(c))
+				length++; // encoded as '?'
+			else
+				length += 3;
+		}
+		return length;
+	}
+
+	/**
+	 * Tells that a stream of the program is read by another thread (see
+	 * ProcessOutputReader): the event is only committed once readerEnded()
+	 * has been called for each of them, so that the bytes read until the
+	 * end of every stream are counted.
+	 */
+	public synchronized void addReader() {
+		readers++;
+	}
+
+	/**
+	 * To be called when the end of a stream given to addReader() has been
+	 * reached.
+	 */
+	public synchronized void readerEnded() {
+		readers--;
+		commitIfOver();
+	}
+
+	/**
+	 * @return the stream, counting the bytes read from it in the event
+	 */
+	public InputStream count(InputStream stream) {
+		return new FilterInputStream(stream) {
+			@Override
+			public int read() throws IOException {
+				int b = super.read();
+				if (b != -1)
+					bytesRead.incrementAndGet();
+				return b;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				int read = super.read(b, off, len);
+				if (read > 0)
+					bytesRead.addAndGet(read);
+				return read;
+			}
+		};
+	}
+
+	/**
+	 * To be called when the program has exited; only the first exit code is
+	 * kept. The event is committed once, when the streams read by other
+	 * threads have ended too (see addReader()).
+	 */
+	public synchronized void end(int exitCode) {
+		if (this.exitCode == null)
+			this.exitCode = exitCode;
+		commitIfOver();
+	}
+
+	private void commitIfOver() {
+		if (ended || exitCode == null || readers > 0)
+			return;
+		ended = true;
+		if (event == null)
+			return;
+		try {
+			end.invoke(event);
+			set.invoke(event, 0, command);
+			set.invoke(event, 1, inputSize);
+			set.invoke(event, 2, exitCode);
+			set.invoke(event, 3, bytesRead.get());
+			commit.invoke(event);
+		} catch (Exception e) {
+			System.err.println("end(): could not commit the JFR event: " + e);
+		}
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ *
+ * Project TouIST, 2015. Easily formalize and solve real-world sized problems
+ * using propositional logic and linear theory of reals with a nice GUI.
+ *
+ * https://github.com/touist/touist
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl-2.1.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     Alexis Comte, Abdelwahab Heba, Olivier Lezaud,
+ *     Skander Ben Slimane, Maël Valais
+ *
+ */
+
+package touist;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A directory of its own for the files of one job (a translation, a solve,
+ * a count...), so that several jobs can run at the same time without
+ * overwriting each other's temp.touist, out.cnf, out.table...
+ *
+ * The directories are created in TouIST.getWhereToSaveTemp()/jobs and are
+ * deleted with everything in them by close(). The workspaces that have not
+ * been closed when the JVM exits are deleted then.
+ *
+ * @author Maël
+ */
+public class Workspace implements Closeable {
+	private static final Set<Workspace> opened = new LinkedHashSet<Workspace>();
+	private static boolean hookAdded = false;
+
+	private final Path directory;
+	private boolean closed = false;
+
+	private Workspace(Path directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Creates a new workspace; its directory name is unique even if several
+	 * workspaces are created at the same time.
+	 * @param name what the job is, e.g. "solve" (used in the directory name)
+	 */
+	public static Workspace create(String name) throws IOException {
+		Path jobs = Paths.get(TouIST.getWhereToSaveTemp(), "jobs");
+		Files.createDirectories(jobs);
+		Workspace workspace = new Workspace(Files.createTempDirectory(jobs, name + "-"));
+		synchronized (opened) {
+			if (!hookAdded) {
+				Runtime.getRuntime().addShutdownHook(new Thread("workspaces-cleanup") {
+					@Override
+					public void run() {
+						List<Workspace> remaining;
+						synchronized (opened) {
+							remaining = new ArrayList<Workspace>(opened);
+						}
+						for (Workspace w : remaining)
+							w.close();
+					}
+				});
+				hookAdded = true;
+			}
+			opened.add(workspace);
+		}
+		return workspace;
+	}
+
+	/**
+	 * @return the absolute path of the file 'name' in this workspace
+	 */
+	public String getPath(String name) {
+		return directory.resolve(name).toAbsolutePath().toString();
+	}
+
+	public String getDirectory() {
+		return directory.toAbsolutePath().toString();
+	}
+
+	/**
+	 * Deletes the directory and its content. Does nothing the second time.
+	 */
+	@Override
+	public void close() {
+		synchronized (opened) {
+			if (closed)
+				return;
+			closed = true;
+			opened.remove(this);
+		}
+		try {
+			Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+					Files.delete(file);
+					return FileVisitResult.CONTINUE;
+				}
+				@Override
+				public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+					Files.delete(dir);
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		} catch (IOException e) {
+			// e.g. a file still opened by a solver on Windows
+			System.err.println("close(): could not delete the workspace '" + directory + "': " + e.getMessage());
+			new File(directory.toString()).deleteOnExit();
+		}
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ *
+ * Project TouIST, 2015. Easily formalize and solve real-world sized problems
+ * using propositional logic and linear theory of reals with a nice GUI.
+ *
+ * https://github.com/touist/touist
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl-2.1.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     Alexis Comte, Abdelwahab Heba, Olivier Lezaud,
+ *     Skander Ben Slimane, Maël Valais
+ *
+ */
+
+package translation;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.TreeMap;
+
+import touist.DiskCache;
+
+/**
+ * Computes a hash of a translated problem (the clauses and the literals
+ * table), e.g. for using it as a cache key (see solution.ResultCache).
+ *
+ * When the translation is streamed, give this DimacsListener to
+ * TranslatorSAT.translate(path, listener): everything is forwarded to the
+ * real listener and hashed on the way. When the translation is in files,
+ * use hashFiles().
+ *
+ * @author Maël
+ */
+public class DimacsDigest implements DimacsListener {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final DimacsListener listener;
+	private final MessageDigest digest = DiskCache.newDigest();
+	private final byte[] intBuffer = new byte[4];
+
+	/**
+	 * @param listener the listener that receives the translation (can be
+	 * null if only the hash is wanted)
+	 */
+	public DimacsDigest(DimacsListener listener) {
+		this.listener = listener;
+	}
+
+	@Override
+	public void problemLine(int nbVariables, int nbClauses) {
+		update('p');
+		update(nbVariables);
+		update(nbClauses);
+		if (listener != null)
+			listener.problemLine(nbVariables, nbClauses);
+	}
+
+	@Override
+	public void clause(int[] literals) {
+		update('c');
+		update(literals.length);
+		for (int literal : literals)
+			update(literal);
+		if (listener != null)
+			listener.clause(literals);
+	}
+
+	@Override
+	public void literal(int literalCode, String literalName) {
+		update('l');
+		update(literalCode);
+		byte[] name = literalName.getBytes(UTF8);
+		update(name.length);
+		digest.update(name);
+		if (listener != null)
+			listener.literal(literalCode, literalName);
+	}
+
+	/**
+	 * @return the hash (hexadecimal) of what has been received
+	 */
+	public String getHash() {
+		return DiskCache.toHex(digest.digest());
+	}
+
+	/**
+	 * @param dimacsFilePath the DIMACS file
+	 * @param literalsMap the "literals map" ("table de correspondance")
+	 * @return the hash (hexadecimal) of the DIMACS file and of the table
+	 */
+	public static String hashFiles(String dimacsFilePath, Map<Integer, String> literalsMap) throws IOException {
+		MessageDigest digest = DiskCache.newDigest();
+		InputStream in = new FileInputStream(dimacsFilePath);
+		try {
+			byte[] buffer = new byte[1 << 16];
+			int read;
+			while ((read = in.read(buffer)) != -1)
+				digest.update(buffer, 0, read);
+		} finally {
+			in.close();
+		}
+		// A LiteralsTable is already sorted by variable
+		Map<Integer, String> sorted = literalsMap instanceof LiteralsTable ? literalsMap
+				: new TreeMap<Integer, String>(literalsMap);
+		for (Map.Entry<Integer, String> entry : sorted.entrySet())
+			digest.update(("\n" + entry.getKey() + " " + entry.getValue()).getBytes(UTF8));
+		return DiskCache.toHex(digest.digest());
+	}
+
+	private void update(int value) {
+		intBuffer[0] = (byte) (value >>> 24);
+		intBuffer[1] = (byte) (value >>> 16);
+		intBuffer[2] = (byte) (value >>> 8);
+		intBuffer[3] = (byte) value;
+		digest.update(intBuffer);
+	}
+}
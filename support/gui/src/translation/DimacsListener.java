@@ -0,0 +1,55 @@
+/*
+ *
+ * Project TouIST, 2015. Easily formalize and solve real-world sized problems
+ * using propositional logic and linear theory of reals with a nice GUI.
+ *
+ * https://github.com/touist/touist
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl-2.1.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     Alexis Comte, Abdelwahab Heba, Olivier Lezaud,
+ *     Skander Ben Slimane, Maël Valais
+ *
+ */
+
+package translation;
+
+/**
+ * Receives the DIMACS output of the translator while it is being produced
+ * (see TranslatorSAT.translate(BufferedReader, DimacsListener)). This allows
+ * a solver to load the clauses while the translator is still running,
+ * without going through the out.cnf and out.table files.
+ *
+ * The methods are called in this order: problemLine() once, clause() for
+ * each clause and then literal() for each line of the literals table.
+ *
+ * @author Maël
+ */
+public interface DimacsListener {
+	/**
+	 * Called when the "p cnf nbVariables nbClauses" line is read.
+	 */
+	void problemLine(int nbVariables, int nbClauses);
+
+	/**
+	 * Called for each clause.
+	 * @param literals the DIMACS literals of the clause (without the final 0)
+	 */
+	void clause(int[] literals);
+
+	/**
+	 * Called for each line of the literals table ("table de correspondance").
+	 * @param literalCode the DIMACS integer
+	 * @param literalName the name of the proposition, e.g. "p(1,2)"
+	 */
+	void literal(int literalCode, String literalName);
+}
@@ -0,0 +1,273 @@
+/*
+ *
+ * Project TouIST, 2015. Easily formalize and solve real-world sized problems
+ * using propositional logic and linear theory of reals with a nice GUI.
+ *
+ * https://github.com/touist/touist
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl-2.1.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     Alexis Comte, Abdelwahab Heba, Olivier Lezaud,
+ *     Skander Ben Slimane, Maël Valais
+ *
+ */
+
+package translation;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The literals table ("table de correspondance") given by the translator:
+ * the name of each DIMACS variable, stored in a String[] indexed by the
+ * variable. name() is a single array access (no boxing, no hashing), which
+ * matters when parsing models of 10^6 variables.
+ *
+ * It is also a Map<Integer,String> (iterated in the order of the variables)
+ * so that it can be given to the code that expects the map.
+ *
+ * @author Maël
+ */
+public class LiteralsTable extends AbstractMap<Integer, String> {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	/**
+	 * The size of the chunks that are read and parsed at once
+	 */
+	private static final int CHUNK = 1 << 20;
+
+	private String[] names;
+	private int size = 0;
+
+	public LiteralsTable() {
+		this(16);
+	}
+
+	/**
+	 * @param variables the number of variables expected
+	 */
+	public LiteralsTable(int variables) {
+		names = new String[Math.max(2, variables + 1)];
+	}
+
+	/**
+	 * @return the map itself if it is already a LiteralsTable, else a table
+	 * with its content (an empty table if map is null)
+	 */
+	public static LiteralsTable of(Map<Integer, String> map) {
+		if (map instanceof LiteralsTable)
+			return (LiteralsTable) map;
+		LiteralsTable table = new LiteralsTable();
+		if (map != null)
+			for (Map.Entry<Integer, String> entry : map.entrySet())
+				table.set(entry.getKey(), entry.getValue());
+		return table;
+	}
+
+	/**
+	 * Reads a table file written by touist --table, made of "name variable"
+	 * lines, e.g.:
+	 *
+	 *     A(b) 3
+	 *     B(a) 4
+	 *
+	 * The file is read by large chunks that are parsed as bytes: only the
+	 * names are created as Strings. It is not memory-mapped: a mapping is
+	 * only released by the GC, and on Windows the file could not be deleted
+	 * or written by the next translation until then.
+	 */
+	public static LiteralsTable load(String tableFilePath) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(tableFilePath, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			long length = channel.size();
+			// About 12 bytes per line for the usual names
+			LiteralsTable table = new LiteralsTable((int) Math.min(length / 12, 1 << 24));
+			byte[] chunk = new byte[(int) Math.min(Math.max(length, 16), CHUNK)];
+			int filled = 0;
+			long position = 0;
+			while (position < length) {
+				int read = channel.read(ByteBuffer.wrap(chunk, filled, chunk.length - filled), position);
+				if (read == -1)
+					break;
+				position += read;
+				filled += read;
+				// The complete lines are parsed, the rest is kept for the next chunk
+				int end = filled;
+				if (position < length) {
+					while (end > 0 && chunk[end - 1] != '\n')
+						end--;
+					if (end == 0) { // a line longer than the chunk
+						chunk = Arrays.copyOf(chunk, chunk.length * 2);
+						continue;
+					}
+				}
+				table.parse(chunk, 0, end);
+				System.arraycopy(chunk, end, chunk, 0, filled - end);
+				filled -= end;
+			}
+			if (filled > 0)
+				table.parse(chunk, 0, filled);
+			return table;
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * Adds the lines of bytes[from, to[.
+	 */
+	private void parse(byte[] bytes, int from, int to) throws IOException {
+		int i = from;
+		while (i < to) {
+			int end = i;
+			while (end < to && bytes[end] != '\n')
+				end++;
+			int last = end;
+			if (last > i && bytes[last - 1] == '\r')
+				last--;
+			if (last > i) {
+				// "name variable": the variable is after the last space
+				int sep = last - 1;
+				int variable = 0, digit = 1;
+				while (sep >= i && bytes[sep] != ' ') {
+					byte b = bytes[sep];
+					if (b < '0' || b > '9')
+						break;
+					variable += (b - '0') * digit;
+					digit *= 10;
+					sep--;
+				}
+				if (sep < i || sep == last - 1 || bytes[sep] != ' ')
+					throw new IOException("load(): invalid line in the literals table: '"
+							+ new String(bytes, i, last - i, UTF8) + "'");
+				set(variable, new String(bytes, i, sep - i, UTF8));
+			}
+			i = end + 1;
+		}
+	}
+
+	/**
+	 * @return the name of the variable, or null if it has no name
+	 */
+	public String name(int variable) {
+		return variable > 0 && variable < names.length ? names[variable] : null;
+	}
+
+	/**
+	 * Gives a name to the variable (a positive integer).
+	 */
+	public void set(int variable, String name) {
+		if (variable <= 0)
+			throw new IllegalArgumentException("set(): invalid variable " + variable);
+		if (variable >= names.length)
+			names = Arrays.copyOf(names, Math.max(variable + 1, names.length * 2));
+		if (names[variable] == null && name != null)
+			size++;
+		else if (names[variable] != null && name == null)
+			size--;
+		names[variable] = name;
+	}
+
+	/**
+	 * @return the biggest variable that can have a name so far
+	 */
+	public int capacity() {
+		return names.length - 1;
+	}
+
+	@Override
+	public String get(Object key) {
+		return key instanceof Integer ? name((Integer) key) : null;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return get(key) != null;
+	}
+
+	@Override
+	public String put(Integer variable, String name) {
+		String previous = name(variable);
+		set(variable, name);
+		return previous;
+	}
+
+	@Override
+	public String remove(Object key) {
+		String previous = get(key);
+		if (previous != null)
+			set((Integer) key, null);
+		return previous;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public Set<Map.Entry<Integer, String>> entrySet() {
+		return new AbstractSet<Map.Entry<Integer, String>>() {
+			@Override
+			public int size() {
+				return size;
+			}
+
+			@Override
+			public Iterator<Map.Entry<Integer, String>> iterator() {
+				return new Iterator<Map.Entry<Integer, String>>() {
+					private int next = following(0);
+					private int current = -1;
+
+					private int following(int variable) {
+						variable++;
+						while (variable < names.length && names[variable] == null)
+							variable++;
+						return variable;
+					}
+
+					@Override
+					public boolean hasNext() {
+						return next < names.length;
+					}
+
+					@Override
+					public Map.Entry<Integer, String> next() {
+						if (!hasNext())
+							throw new NoSuchElementException();
+						current = next;
+						next = following(next);
+						return new AbstractMap.SimpleImmutableEntry<Integer, String>(current, names[current]);
+					}
+
+					@Override
+					public void remove() {
+						if (current == -1)
+							throw new IllegalStateException();
+						set(current, null);
+						current = -1;
+					}
+				};
+			}
+		};
+	}
+}
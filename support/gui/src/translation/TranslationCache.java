@@ -0,0 +1,173 @@
+/*
+ *
+ * Project TouIST, 2015. Easily formalize and solve real-world sized problems
+ * using propositional logic and linear theory of reals with a nice GUI.
+ *
+ * https://github.com/touist/touist
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the GNU Lesser General Public License
+ * (LGPL) version 2.1 which accompanies this distribution, and is available at
+ * http://www.gnu.org/licenses/lgpl-2.1.html
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * Contributors:
+ *     Alexis Comte, Abdelwahab Heba, Olivier Lezaud,
+ *     Skander Ben Slimane, Maël Valais
+ *
+ */
+
+package translation;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import touist.DiskCache;
+import touist.TouIST;
+
+/**
+ * Remembers what the touist translator produced (the CNF or SMT2 output,
+ * the literals table and the warnings) so that translating the same
+ * touistl source again with the same options does not run touist again.
+ *
+ * The key is the hash of the source, of the mode (e.g. "--sat"), of the
+ * options and of the touist binary (its path, size and date, so that a new
+ * touist is never given the translations of the old one). The entries are in
+ * TouIST.getWhereToSaveTemp()/cache/translations and the least recently used
+ * ones are removed when the cache is bigger than "touist.translationCacheSize"
+ * (in MB, default 256). The cache is disabled with
+ * -Dtouist.translationCache=false.
+ *
+ * Only the successful translations are kept: an entry is a set of named
+ * byte arrays (e.g. "stderr", "cnf", "table") chosen by the translator.
+ *
+ * @author Maël
+ */
+public class TranslationCache {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final String HEADER = "touist-translation 1";
+
+	private static TranslationCache shared;
+
+	private final DiskCache cache;
+	private final long maxSize;
+
+	/**
+	 * @return the cache used by the translators, or null if the cache is
+	 * disabled (-Dtouist.translationCache=false)
+	 */
+	public static synchronized TranslationCache getShared() {
+		if ("false".equals(System.getProperty("touist.translationCache")))
+			return null;
+		if (shared == null)
+			shared = new TranslationCache(TouIST.getWhereToSaveTemp() + File.separator + "cache"
+					+ File.separator + "translations",
+					Long.getLong("touist.translationCacheSize", 256) * 1024 * 1024);
+		return shared;
+	}
+
+	/**
+	 * @param directory where the entries are stored
+	 * @param maxSize the maximum size of the cache in bytes
+	 */
+	public TranslationCache(String directory, long maxSize) {
+		this.cache = new DiskCache(directory, maxSize);
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * @param source the touistl source
+	 * @param mode e.g. "--sat" or "--smt QF_LRA"
+	 * @param options the other options given to touist
+	 * @return the key of the translation
+	 */
+	public String key(byte[] source, String mode, List<String> options) {
+		MessageDigest digest = DiskCache.newDigest();
+		File touist = new File(TouIST.getTouistBin());
+		digest.update((touist.getPath() + "\n" + touist.length() + "\n" + touist.lastModified()
+				+ "\n" + mode + "\n" + options + "\n").getBytes(UTF8));
+		digest.update(source);
+		return DiskCache.toHex(digest.digest());
+	}
+
+	/**
+	 * @return true if an output of this size could be stored; bigger outputs
+	 * should not even be read into memory
+	 */
+	public boolean canStore(long size) {
+		return size <= maxSize;
+	}
+
+	/**
+	 * @return the parts of the entry (in the order they were put) or null if
+	 * there is no entry for this key
+	 */
+	public Map<String, byte[]> get(String key) {
+		byte[] content = cache.get(key);
+		if (content == null)
+			return null;
+		try {
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(content));
+			if (!in.readUTF().equals(HEADER))
+				throw new IOException("not a translation");
+			Map<String, byte[]> parts = new LinkedHashMap<String, byte[]>();
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				String name = in.readUTF();
+				byte[] part = new byte[in.readInt()];
+				in.readFully(part);
+				parts.put(name, part);
+			}
+			System.out.println("get(): translation found in the cache");
+			return parts;
+		} catch (IOException e) {
+			System.err.println("get(): invalid translation in the cache: " + e.getMessage());
+			cache.remove(key);
+			return null;
+		}
+	}
+
+	public void put(String key, Map<String, byte[]> parts) {
+		long size = 0;
+		for (byte[] part : parts.values())
+			size += part.length;
+		if (!canStore(size))
+			return;
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) size + 256);
+		DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			out.writeUTF(HEADER);
+			out.writeInt(parts.size());
+			for (Map.Entry<String, byte[]> part : parts.entrySet()) {
+				out.writeUTF(part.getKey());
+				out.writeInt(part.getValue().length);
+				out.write(part.getValue());
+			}
+			out.flush();
+		} catch (IOException e) {
+			throw new IllegalStateException(e); // cannot happen in memory
+		}
+		cache.put(key, bytes.toByteArray());
+	}
+
+	static byte[] bytes(String text) {
+		return text.getBytes(UTF8);
+	}
+
+	static String text(byte[] bytes) {
+		return bytes == null ? "" : new String(bytes, UTF8);
+	}
+}
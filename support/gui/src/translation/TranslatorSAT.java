@@ -25,41 +25,73 @@ package translation;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.StringReader;
+import java.io.Writer;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
+import solution.ProcessOutputReader;
+import touist.Metrics;
+import touist.ProcessEvent;
 import touist.TouIST;
+import touist.Workspace;
 
 /**
  * @author Abdel
  * @Modified by Mael
  */
 public class TranslatorSAT {
-	final private String outputFilePath = touist.TouIST.getWhereToSaveTemp() + File.separator + "out.cnf";
-	final private String outputTableFilePath = touist.TouIST.getWhereToSaveTemp() + File.separator + "out.table";
-	private Map<Integer,String> literalsMap = new HashMap<Integer,String>();
+	private String outputFilePath = touist.TouIST.getWhereToSaveTemp() + File.separator + "out.cnf";
+	private String outputTableFilePath = touist.TouIST.getWhereToSaveTemp() + File.separator + "out.table";
+	// The copy of the streamed output, kept for the cache
+	private String outputStdoutFilePath = touist.TouIST.getWhereToSaveTemp() + File.separator + "out.stdout";
+	private LiteralsTable literalsMap = new LiteralsTable();
 	private List<TranslationError> errors = new ArrayList<TranslationError>();
 	private Process p;
 	private List<String> options = new ArrayList<String>();
+	private TranslationCache cache = TranslationCache.getShared();
 
 	public TranslatorSAT() {
 	}
 	public TranslatorSAT(List<String> options) {
 		this.options = options;
 	}
+	/**
+	 * @param workspace where out.cnf and out.table are written, so that
+	 * several translations can run at the same time (see setWorkspace())
+	 */
+	public TranslatorSAT(List<String> options, Workspace workspace) {
+		this.options = options;
+		setWorkspace(workspace);
+	}
+
+	/**
+	 * Writes the next translations into this workspace instead of the shared
+	 * temp directory. The files stay there until the workspace is closed, so
+	 * the workspace must not be closed before the solver that reads
+	 * getDimacsFilePath() is.
+	 */
+	public void setWorkspace(Workspace workspace) {
+		outputFilePath = workspace.getPath("out.cnf");
+		outputTableFilePath = workspace.getPath("out.table");
+		outputStdoutFilePath = workspace.getPath("out.stdout");
+	}
 
 	public boolean translate(String touistlFilePath) throws IOException, InterruptedException {
 		BufferedReader reader = new BufferedReader(new FileReader(touistlFilePath));
@@ -123,51 +155,282 @@ public class TranslatorSAT {
 		cmd.add("--error-format");
 		cmd.add("%l:%c:%b:%B: %t: %m");
 		cmd.addAll(options);
+
+		String source = readSource(reader);
+		long start = System.nanoTime();
+		String key = null;
+		if (cache != null) {
+			key = cache.key(TranslationCache.bytes(source), "--sat", options);
+			Map<String, byte[]> cached = cache.get(key);
+			if (cached != null && cached.containsKey("cnf") && cached.containsKey("table")) {
+				Files.write(Paths.get(outputFilePath), cached.get("cnf"));
+				Files.write(Paths.get(outputTableFilePath), cached.get("table"));
+				errors = TranslationError.parse(TranslationCache.text(cached.get("stderr")));
+				Metrics.timer(Metrics.TRANSLATION).since(start);
+				countProblemLine(outputFilePath);
+				parseLiteralsMapFile(outputTableFilePath);
+				return true;
+			}
+		}
 		
         System.out.println("translate(): cmd executed: "+cmd.toString());
 		
+        ProcessEvent event = ProcessEvent.begin(cmd);
         this.p = Runtime.getRuntime().exec(cmd.toArray(new String[0]));
+        event.setInputSize(ProcessEvent.utf8Length(source));
 
         BufferedWriter toProcess = new BufferedWriter(new OutputStreamWriter(p.getOutputStream()));
-        String s = "";
-        while ((s = reader.readLine())!=null) {
-        	toProcess.write(s + "\n");
-        }
+        toProcess.write(source);
         toProcess.flush();
         toProcess.close();
 		
         int return_code = p.waitFor();
         
-		BufferedReader fromProcess = new BufferedReader(new InputStreamReader(p.getInputStream()));
+		BufferedReader fromProcess = new BufferedReader(new InputStreamReader(event.count(p.getInputStream())));
 		List<String> linesStdout = new ArrayList<String>();
 		while (fromProcess.ready())
 			linesStdout.add(fromProcess.readLine());
 
 		BufferedReader fromProcessErr = new BufferedReader(new InputStreamReader(
-				this.p.getErrorStream()));
+				event.count(this.p.getErrorStream())));
 		String linesStdErr = "";
 		while (fromProcessErr.ready()) {
 			linesStdErr += fromProcessErr.readLine() + "\n";
 		}
 		fromProcessErr.close();
 		fromProcess.close();
+		event.end(return_code);
 
 		errors = TranslationError.parse(linesStdErr);
+		Metrics.timer(Metrics.TRANSLATION).since(start);
 		
 		if(return_code == OK) {
+			countProblemLine(outputFilePath);
 			parseLiteralsMapFile(outputTableFilePath);
+			File cnf = new File(outputFilePath), table = new File(outputTableFilePath);
+			if (cache != null && cache.canStore(cnf.length() + table.length())) {
+				Map<String, byte[]> parts = new LinkedHashMap<String, byte[]>();
+				parts.put("stderr", TranslationCache.bytes(linesStdErr));
+				parts.put("cnf", Files.readAllBytes(cnf.toPath()));
+				parts.put("table", Files.readAllBytes(table.toPath()));
+				cache.put(key, parts);
+			}
 		}
 		return return_code == OK;
 	}
 
+	public boolean translate(String touistlFilePath, DimacsListener listener) throws IOException, InterruptedException {
+		BufferedReader reader = new BufferedReader(new FileReader(touistlFilePath));
+		return translate(reader, listener);
+	}
+
+	/**
+	 * Streaming version of translate(BufferedReader): the translator is asked
+	 * to print the DIMACS clauses and the literals table (as "c name 12"
+	 * comments) on its stdout instead of writing out.cnf and out.table.
+	 * Each clause is given to the listener as soon as it is read, so that the
+	 * solver can load the problem while the translator is still running.
+	 * The literals map is also filled (see getLiteralsMap()), but
+	 * getDimacsFilePath() must not be used after this method.
+	 *
+	 * @param reader the touistl source
+	 * @param listener receives the clauses and the literals table
+	 * @return true if the translation went well (migth have generated some
+	 * warning though), false of fatal errors (syntax/semantic errors) happened
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public boolean translate(BufferedReader reader, DimacsListener listener) throws IOException, InterruptedException {
+		final int OK = 0;
+
+		String pathtouist = touist.TouIST.getTouistBin();
+
+		List<String> cmd = new ArrayList<String>();
+
+		cmd.add(pathtouist);
+		cmd.add("--sat");
+		cmd.add("-");
+		cmd.add("--error-format");
+		cmd.add("%l:%c:%b:%B: %t: %m");
+		cmd.addAll(options);
+
+		String source = readSource(reader);
+		long start = System.nanoTime();
+		String key = null;
+		literalsMap = new LiteralsTable();
+		if (cache != null) {
+			// The streamed output is not the same as out.cnf (the table is in it)
+			key = cache.key(TranslationCache.bytes(source), "--sat (stdout)", options);
+			Map<String, byte[]> cached = cache.get(key);
+			if (cached != null && cached.containsKey("stdout")) {
+				readDimacs(new BufferedReader(new InputStreamReader(
+						new ByteArrayInputStream(cached.get("stdout")), "UTF-8")), listener, null);
+				errors = TranslationError.parse(TranslationCache.text(cached.get("stderr")));
+				Metrics.timer(Metrics.TRANSLATION).since(start);
+				return true;
+			}
+		}
+
+		System.out.println("translate(): cmd executed: "+cmd.toString());
+
+		ProcessEvent event = ProcessEvent.begin(cmd);
+		this.p = Runtime.getRuntime().exec(cmd.toArray(new String[0]));
+		event.setInputSize(ProcessEvent.utf8Length(source));
+		ProcessOutputReader fromProcessErr = new ProcessOutputReader(
+				p.getErrorStream(), null, "touist --sat stderr", event).start();
+
+		BufferedWriter toProcess = new BufferedWriter(new OutputStreamWriter(p.getOutputStream()));
+		toProcess.write(source);
+		toProcess.flush();
+		toProcess.close();
+
+		// touist has read the whole input; we now read the clauses and the
+		// table while they are printed
+		// The output is copied to out.stdout (not in memory: it can be huge)
+		// and put into the cache if the translation went well
+		BufferedReader fromProcess = new BufferedReader(new InputStreamReader(event.count(p.getInputStream())));
+		File stdout = new File(outputStdoutFilePath);
+		Writer copy = cache != null ? new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(stdout), "UTF-8")) : null;
+		boolean copied;
+		try {
+			copied = readDimacs(fromProcess, listener, copy);
+		} finally {
+			fromProcess.close();
+			if (copy != null)
+				copy.close();
+		}
+
+		int return_code = p.waitFor();
+		fromProcessErr.waitForExit(Long.MAX_VALUE);
+		event.end(return_code);
+		String linesStdErr = fromProcessErr.drain();
+		errors = TranslationError.parse(linesStdErr);
+		Metrics.timer(Metrics.TRANSLATION).since(start);
+		if (return_code == OK && copied && cache.canStore(stdout.length())) {
+			Map<String, byte[]> parts = new LinkedHashMap<String, byte[]>();
+			parts.put("stderr", TranslationCache.bytes(linesStdErr));
+			parts.put("stdout", Files.readAllBytes(stdout.toPath()));
+			cache.put(key, parts);
+		}
+		stdout.delete();
+		return return_code == OK;
+	}
+
+	/**
+	 * Reads the DIMACS printed by touist (with the literals table as "c name 12"
+	 * comments after the "p cnf" line), gives it to the listener and fills the
+	 * literals map.
+	 *
+	 * @param copy if not null, the lines read are also written to it until
+	 * the output becomes too big for the cache
+	 * @return true if the whole output has been written to copy
+	 */
+	private boolean readDimacs(BufferedReader fromProcess, DimacsListener listener, Writer copy) throws IOException {
+		boolean problemLineRead = false;
+		int[] clause = new int[16];
+		int clauseSize = 0;
+		long copied = 0;
+		String line;
+		while ((line = fromProcess.readLine()) != null) {
+			if (copy != null) {
+				copied += line.length() + 1;
+				if (cache.canStore(copied))
+					copy.write(line + '\n');
+				else
+					copy = null;
+			}
+			if (line.isEmpty()) {
+				continue;
+			} else if (line.charAt(0) == 'c') {
+				// Before the "p cnf" line, comments are not part of the table
+				if (problemLineRead && line.length() > 2) {
+					int sep = line.lastIndexOf(' ');
+					try {
+						int literalCode = Integer.parseInt(line.substring(sep+1));
+						String literalString = line.substring(2,sep);
+						literalsMap.set(literalCode, literalString);
+						listener.literal(literalCode, literalString);
+					} catch (NumberFormatException e) {
+						// not a line of the table
+					}
+				}
+			} else if (line.charAt(0) == 'p') {
+				String[] header = line.trim().split("\\s+"); // p cnf nbvar nbclauses
+				listener.problemLine(Integer.parseInt(header[2]), Integer.parseInt(header[3]));
+				Metrics.counter(Metrics.VARIABLES).add(Integer.parseInt(header[2]));
+				Metrics.counter(Metrics.CLAUSES).add(Integer.parseInt(header[3]));
+				problemLineRead = true;
+			} else {
+				// A clause: "1 -2 3 0" (a clause could span several lines)
+				int i = 0, len = line.length();
+				while (i < len) {
+					while (i < len && line.charAt(i) == ' ') i++;
+					if (i == len) break;
+					boolean negative = line.charAt(i) == '-';
+					if (negative) i++;
+					int literal = 0;
+					while (i < len && line.charAt(i) != ' ') {
+						literal = literal * 10 + (line.charAt(i) - '0');
+						i++;
+					}
+					if (literal == 0) { // end of clause
+						listener.clause(Arrays.copyOf(clause, clauseSize));
+						clauseSize = 0;
+					} else {
+						if (clauseSize == clause.length)
+							clause = Arrays.copyOf(clause, clause.length * 2);
+						clause[clauseSize++] = negative ? -literal : literal;
+					}
+				}
+			}
+		}
+		return copy != null;
+	}
+
+	/**
+	 * Adds the number of variables and clauses given by the "p cnf" line of
+	 * the DIMACS file to the metrics.
+	 */
+	private static void countProblemLine(String dimacsFilePath) throws IOException {
+		BufferedReader br = new BufferedReader(new FileReader(dimacsFilePath));
+		try {
+			String line;
+			while ((line = br.readLine()) != null) {
+				if (line.startsWith("p")) {
+					String[] header = line.trim().split("\\s+"); // p cnf nbvar nbclauses
+					Metrics.counter(Metrics.VARIABLES).add(Integer.parseInt(header[2]));
+					Metrics.counter(Metrics.CLAUSES).add(Integer.parseInt(header[3]));
+					return;
+				} else if (!line.isEmpty() && line.charAt(0) != 'c') {
+					return; // no problem line
+				}
+			}
+		} finally {
+			br.close();
+		}
+	}
+
+	/**
+	 * @return the touistl source as it is given to touist
+	 */
+	private static String readSource(BufferedReader reader) throws IOException {
+		StringBuilder source = new StringBuilder();
+		String s = "";
+		while ((s = reader.readLine())!=null) {
+			source.append(s).append('\n');
+		}
+		return source.toString();
+	}
+
 	/**
 	 * Allows the user to get the literalsMap that contains the matching table
 	 * between the DIMACS integers and the real literals names. This map is used
 	 * by the Solver instance.
 	 * @warning This table is NOT the same as the table returned by Solver class
-	 * @return the map
+	 * @return the map (a LiteralsTable)
 	 */
-	public Map<Integer,String> getLiteralsMap() {
+	public LiteralsTable getLiteralsMap() {
 		return literalsMap;
 	}
         
@@ -194,12 +457,14 @@ public class TranslatorSAT {
 
 	/**
 	 * Method used by Translator.translate() to parse the literals map file that
-	 * holds the matching names for the given DIMACS integers.
+	 * holds the matching names for the given DIMACS integers (see
+	 * LiteralsTable.load()).
+	 * Package-private for the benchmarks (see jmh/).
 	 * @param literalsMapFilePath
 	 * @throws FileNotFoundException
 	 * @throws IOException
 	 */
-	private void parseLiteralsMapFile(String literalsMapFilePath)
+	void parseLiteralsMapFile(String literalsMapFilePath)
 			throws FileNotFoundException, IOException {
 		/*
 		 * Example of Table/map file:
@@ -208,16 +473,8 @@ public class TranslatorSAT {
 		 * 		C(a) 1
 		 * 		B(b) 2
 		 */
-		File TR = new File(literalsMapFilePath);
-		BufferedReader br = new BufferedReader(new FileReader(TR));
-		String line = "";
-		while (br.ready()) {
-			line = br.readLine();
-                        int sep = line.lastIndexOf(' ');
-			String literalString = line.substring(0,sep);
-			int literalCode = Integer.parseInt(line.substring(sep+1));
-			literalsMap.put(literalCode, literalString);
-		}
-		br.close();
+		long start = System.nanoTime();
+		literalsMap = LiteralsTable.load(literalsMapFilePath);
+		Metrics.timer(Metrics.TABLE_PARSING).since(start);
 	}
 }
@@ -32,14 +32,20 @@ import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.StringReader;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
 
+import touist.Metrics;
+import touist.ProcessEvent;
 import touist.TouIST;
+import touist.Workspace;
 
 /**
  * @author Abdel
@@ -54,6 +60,7 @@ public class TranslatorSMT {
 	private String currentPath = TouIST.getWhereToSaveTemp();
 	private Process p;
 	private List<String> options = new ArrayList<String>();
+	private TranslationCache cache = TranslationCache.getShared();
 
 	
 	public TranslatorSMT(List<String> options) {
@@ -61,6 +68,14 @@ public class TranslatorSMT {
 	}
 	public TranslatorSMT() {
 	}
+
+	/**
+	 * Writes the next translations into this workspace instead of the shared
+	 * temp directory (see TranslatorSAT.setWorkspace()).
+	 */
+	public void setWorkspace(Workspace workspace) {
+		currentPath = workspace.getDirectory();
+	}
 	
 	public boolean translate(String touistlFilePath, String logic) throws IOException, InterruptedException {
 		BufferedReader reader = new BufferedReader(new FileReader(touistlFilePath));
@@ -100,42 +115,66 @@ public class TranslatorSMT {
 		cmd.add("--smt");
 		cmd.add(logic);
 		cmd.add("-o");
-		cmd.add(outputFilePath);
+		cmd.add(getSMTFilePath()); // the cache needs to know where it is
 		cmd.add("--error-format");
 		cmd.add("%l:%c:%b:%B: %t: %m\n");
 		cmd.addAll(options);		
+
+		StringBuilder source = new StringBuilder();
+		String s = "";
+		while ((s = reader.readLine())!=null) {
+			source.append(s).append('\n');
+		}
+		long start = System.nanoTime();
+		String key = null;
+		if (cache != null) {
+			key = cache.key(TranslationCache.bytes(source.toString()), "--smt " + logic, options);
+			Map<String, byte[]> cached = cache.get(key);
+			if (cached != null && cached.containsKey("smt2")) {
+				Files.write(Paths.get(getSMTFilePath()), cached.get("smt2"));
+				errors = TranslationError.parse(TranslationCache.text(cached.get("stderr")));
+				Metrics.timer(Metrics.TRANSLATION).since(start);
+				return true;
+			}
+		}
 		
         System.out.println("translate(): cmd executed: "+cmd.toString());
 		
+        ProcessEvent event = ProcessEvent.begin(cmd);
         this.p = Runtime.getRuntime().exec(cmd.toArray(new String[0]));
+        event.setInputSize(ProcessEvent.utf8Length(source));
 
         BufferedWriter toProcess = new BufferedWriter(new OutputStreamWriter(p.getOutputStream()));
-        String s = "";
-        while ((s = reader.readLine())!=null) {
-        	toProcess.write(s + "\n");
-        }
+        toProcess.write(source.toString());
         toProcess.flush();
         toProcess.close();
 		
         int return_code = p.waitFor();
         
-		BufferedReader fromProcess = new BufferedReader(new InputStreamReader(p.getInputStream()));
+		BufferedReader fromProcess = new BufferedReader(new InputStreamReader(event.count(p.getInputStream())));
 		List<String> linesStdout = new ArrayList<String>();
 		while (fromProcess.ready())
 			linesStdout.add(fromProcess.readLine());
 
 		BufferedReader fromProcessErr = new BufferedReader(new InputStreamReader(
-				this.p.getErrorStream()));
+				event.count(this.p.getErrorStream())));
 		String linesStdErr = "";
 		while (fromProcessErr.ready()) {
 			linesStdErr += fromProcessErr.readLine() + "\n";
 		}
 		fromProcessErr.close();
 		fromProcess.close();
+		event.end(return_code);
 
 		errors = TranslationError.parse(linesStdErr);
+		Metrics.timer(Metrics.TRANSLATION).since(start);
 		
-		if(return_code == OK) {
+		File smt2 = new File(getSMTFilePath());
+		if(return_code == OK && cache != null && smt2.isFile() && cache.canStore(smt2.length())) {
+			Map<String, byte[]> parts = new LinkedHashMap<String, byte[]>();
+			parts.put("stderr", TranslationCache.bytes(linesStdErr));
+			parts.put("smt2", Files.readAllBytes(smt2.toPath()));
+			cache.put(key, parts);
 		}
 		return return_code == OK;
 	}
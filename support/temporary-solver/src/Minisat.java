@@ -22,10 +22,15 @@
  */
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.FileNotFoundException;
+import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
 
+import org.sat4j.core.VecInt;
 import org.sat4j.minisat.SolverFactory;
 import org.sat4j.reader.DimacsReader;
 import org.sat4j.reader.ParseFormatException;
@@ -39,14 +44,32 @@ import org.sat4j.tools.ModelIterator;
  */
 public class Minisat {
 
+    /**
+     * When '*' is asked, the output is flushed every FLUSH_EVERY models so
+     * that the client can start reading the models before the end.
+     */
+    private static final int FLUSH_EVERY = 100;
+
     /**
      * @param args the command line arguments
      */
     //Use : javac -cp sat4j-sat.jar Minisat.java to compil program
     // &
-    //java -cp .:sat4j-sat.jar Minisat DimacsFile to run it
-    //press 1 given Next Model
-    //and 0 to exiting prog
+    //java -cp .:sat4j-sat.jar Minisat DimacsFile [limit [hidden]] to run it
+    //Each line read on stdin is a request:
+    //  N (N > 0)  gives the N next models, one model per line
+    //             (press 1 given Next Model)
+    //  *          gives every remaining model (streaming)
+    //  0          exiting prog
+    //The optional 'limit' is the maximum number of models given in total.
+    //The optional 'hidden' is a file containing variables (separated by
+    //spaces or new lines) that are not shown to the user, e.g. the '&' ones
+    //of the table: each model is blocked on the other variables only, so that
+    //two models always differ on a shown variable (limit can be 0 for no
+    //limit).
+    //The program exits when there is no more models (or when the limit is
+    //reached): the client knows that it has read the last model when stdout
+    //is closed.
     public static void main(String[] args) throws ParseFormatException, IOException, ContradictionException {
 
         //Instanciate MiniSat Solver from org.sat4j.minisat.SolverFactory
@@ -55,25 +78,72 @@ public class Minisat {
         ModelIterator mi = new ModelIterator(solver);
         //TimeLimite for executing this Solver session
         solver.setTimeout(3600); // 1 hour timeout
+        //Maximum number of models given (0 means no limit)
+        long limit = (args.length > 1) ? Long.parseLong(args[1]) : 0;
+        //Variables on which the models are blocked (null means all of them)
+        boolean[] hidden = null;
+        try {
+            hidden = (args.length > 2) ? readHidden(args[2]) : null;
+        } catch (IOException e) {
+            System.err.println("Error Loading File");
+            System.exit(2);
+        } catch (NumberFormatException e) {
+            System.err.println("Incorrect Hidden Variables Content");
+            System.exit(3);
+        }
         //DimacsReader will be an Iterator Reader for Solver Instance to resolve Problem
-        DimacsReader reader = new DimacsReader(mi);
+        //(with hidden variables, the models are blocked by hand instead of by mi)
+        DimacsReader reader = new DimacsReader(hidden == null ? mi : solver);
         try {
             //IProblem is an Instance who contain Problem Format(CNF)
             //if File contain wron CNF format, ParseFrmatException will be generated.
             IProblem problem = reader.parseInstance(args[0]);
+            //Variables on which the models are blocked
+            int[] projection = (hidden == null) ? null : projection(solver.nVars(), hidden);
             boolean unsat=true;
             // Buffered Input Reader will able to communicate(pipe) with Main Program
             BufferedReader reader1 =new BufferedReader(new InputStreamReader(System.in));
-            // 1 to Run each model and 0 to exit program.
-            while(problem.isSatisfiable() && Integer.parseInt(reader1.readLine())==1) {
-                unsat=false;
-                //System.out.println("Satisfiable !");
-                //problem model return int[] Satisfiable model
-                System.out.println(reader.decode(problem.model()));
+            // Models are flushed at the end of each request, not at each line
+            PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
+            long given = 0;
+            boolean noMoreModels = false;
+            String request;
+            while(!noMoreModels && (request = reader1.readLine()) != null) {
+                request = request.trim();
+                long asked;
+                if (request.equals("*")) {
+                    asked = Long.MAX_VALUE;
+                } else {
+                    try {
+                        asked = Long.parseLong(request);
+                    } catch (NumberFormatException e) {
+                        asked = 0;
+                    }
+                }
+                if (asked <= 0)
+                    break;
+                for (long i = 0; i < asked; i++) {
+                    if ((limit > 0 && given >= limit) || !problem.isSatisfiable()) {
+                        noMoreModels = true;
+                        break;
+                    }
+                    unsat=false;
+                    //problem model return int[] Satisfiable model
+                    out.println(reader.decode(problem.model()));
+                    given++;
+                    if (projection != null && !block(solver, projection)) {
+                        noMoreModels = true;
+                        break;
+                    }
+                    if (asked == Long.MAX_VALUE && given % FLUSH_EVERY == 0)
+                        out.flush();
+                }
+                out.flush();
             }
-            if(unsat)
+            if(unsat) {
                 System.err.println("Unsatisfiable !");
                 System.exit(1);
+            }
 
         //Catch Exceptions....
         } catch (FileNotFoundException e) {
@@ -94,4 +164,61 @@ public class Minisat {
         }
         System.exit(0);
     }
+
+    /**
+     * Adds the clause that forbids the current model on the projection
+     * variables.
+     * @return false if there cannot be another model
+     */
+    private static boolean block(ISolver solver, int[] projection) {
+        if (projection.length == 0)
+            return false;
+        int[] blocking = new int[projection.length];
+        for (int i = 0; i < projection.length; i++)
+            blocking[i] = solver.model(projection[i]) ? -projection[i] : projection[i];
+        try {
+            solver.addClause(new VecInt(blocking));
+        } catch (ContradictionException e) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the variables from 1 to nVars that are not hidden
+     */
+    private static int[] projection(int nVars, boolean[] hidden) {
+        int count = 0;
+        int[] projection = new int[nVars];
+        for (int var = 1; var <= nVars; var++)
+            if (var >= hidden.length || !hidden[var])
+                projection[count++] = var;
+        int[] result = new int[count];
+        System.arraycopy(projection, 0, result, 0, count);
+        return result;
+    }
+
+    private static boolean[] readHidden(String path) throws IOException {
+        BufferedReader in = new BufferedReader(new FileReader(path));
+        boolean[] hidden = new boolean[1];
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                for (String token : line.trim().split("\\s+")) {
+                    if (token.isEmpty())
+                        continue;
+                    int var = Math.abs(Integer.parseInt(token));
+                    if (var >= hidden.length) {
+                        boolean[] bigger = new boolean[Math.max(var + 1, hidden.length * 2)];
+                        System.arraycopy(hidden, 0, bigger, 0, hidden.length);
+                        hidden = bigger;
+                    }
+                    hidden[var] = true;
+                }
+            }
+        } finally {
+            in.close();
+        }
+        return hidden;
+    }
 }